@@ -0,0 +1,82 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parses the color values used in the shapes xml files, with the same
+ * syntax as android.graphics.Color#parseColor
+ */
+public final class Colors {
+
+	/**
+	 * @param value
+	 *            a color (#RRGGBB, #AARRGGBB or a color name : red, blue,
+	 *            green, black, white, gray, cyan, magenta, yellow, ...)
+	 * @return the ARGB color
+	 * @throws IllegalArgumentException
+	 *             if the color can not be parsed
+	 */
+	public static int parseColor(final String value) {
+		if ((value != null) && (value.length() > 0) && (value.charAt(0) == '#')) {
+			final int length = value.length();
+			if ((length != 7) && (length != 9)) {
+				throw new IllegalArgumentException("Unknown color : " + value);
+			}
+
+			// parsed in place, the xml attributes are read without allocating
+			long color = 0;
+			for (int i = 1; i < length; ++i) {
+				int digit = Character.digit(value.charAt(i), 16);
+				if (digit < 0) {
+					throw new IllegalArgumentException("Unknown color : "
+							+ value);
+				}
+				color = (color << 4) | digit;
+			}
+			if (length == 7) {
+				// no alpha : opaque
+				color |= 0x00000000FF000000L;
+			}
+			return (int) color;
+		}
+
+		Integer color = (value == null) ? null : NAMES.get(value
+				.toLowerCase(Locale.ROOT));
+		if (color == null) {
+			throw new IllegalArgumentException("Unknown color : " + value);
+		}
+		return color.intValue();
+	}
+
+	private Colors() {
+	}
+
+	private static final Map<String, Integer> NAMES = new HashMap<String, Integer>();
+	static {
+		NAMES.put("black", 0xFF000000);
+		NAMES.put("darkgray", 0xFF444444);
+		NAMES.put("gray", 0xFF888888);
+		NAMES.put("lightgray", 0xFFCCCCCC);
+		NAMES.put("white", 0xFFFFFFFF);
+		NAMES.put("red", 0xFFFF0000);
+		NAMES.put("green", 0xFF00FF00);
+		NAMES.put("blue", 0xFF0000FF);
+		NAMES.put("yellow", 0xFFFFFF00);
+		NAMES.put("cyan", 0xFF00FFFF);
+		NAMES.put("magenta", 0xFFFF00FF);
+		NAMES.put("aqua", 0xFF00FFFF);
+		NAMES.put("fuchsia", 0xFFFF00FF);
+		NAMES.put("darkgrey", 0xFF444444);
+		NAMES.put("grey", 0xFF888888);
+		NAMES.put("lightgrey", 0xFFCCCCCC);
+		NAMES.put("lime", 0xFF00FF00);
+		NAMES.put("maroon", 0xFF800000);
+		NAMES.put("navy", 0xFF000080);
+		NAMES.put("olive", 0xFF808000);
+		NAMES.put("purple", 0xFF800080);
+		NAMES.put("silver", 0xFFC0C0C0);
+		NAMES.put("teal", 0xFF008080);
+	}
+}
@@ -0,0 +1,137 @@
+package fr.xgouchet.shapebutton.geometry;
+
+/**
+ * Parses the dimension (and number) values used in the shapes xml files,
+ * without allocating
+ */
+public final class Dimensions {
+
+	/**
+	 * @param value
+	 *            a value (dp, px, ...), sp values are scaled as dp values
+	 * @param dipToPixel
+	 *            the display density
+	 * @return the corresponding pixel value
+	 */
+	public static int getPixelSize(final String value, final float dipToPixel) {
+		return getPixelSize(value, dipToPixel, dipToPixel);
+	}
+
+	/**
+	 * @param value
+	 *            a value (dp, sp, px, ...)
+	 * @param dipToPixel
+	 *            the display density
+	 * @param spToPixel
+	 *            the display scaled density (the density times the user font
+	 *            scale)
+	 * @return the corresponding pixel value
+	 */
+	public static int getPixelSize(final String value, final float dipToPixel,
+			final float spToPixel) {
+		int pixel;
+		if ((value == null) || (value.length() == 0)) {
+			pixel = 0;
+		} else if (value.endsWith("px")) {
+			pixel = parseInt(value, value.length() - 2);
+		} else if (value.endsWith("dp")) {
+			int dp = parseInt(value, value.length() - 2);
+			pixel = (int) ((dp * dipToPixel) + 0.5f);
+		} else if (value.endsWith("sp")) {
+			int sp = parseInt(value, value.length() - 2);
+			pixel = (int) ((sp * spToPixel) + 0.5f);
+		} else {
+			pixel = parseInt(value, value.length());
+		}
+		return pixel;
+	}
+
+	/**
+	 * @param value
+	 *            a decimal number ("2", "-1.5", ".5"...). Other forms (eg :
+	 *            with an exponent) are handed to {@link Float#parseFloat}
+	 * @return the number
+	 * @throws NumberFormatException
+	 *             if the value is not a number
+	 */
+	public static float parseFloat(final String value) {
+		final int length = value.length();
+		int i = 0, digits = 0, scale = 0;
+		boolean negative = false, dot = false;
+		long mantissa = 0;
+
+		if ((length > 0)
+				&& ((value.charAt(0) == '-') || (value.charAt(0) == '+'))) {
+			negative = (value.charAt(0) == '-');
+			i++;
+		}
+
+		for (; i < length; ++i) {
+			char c = value.charAt(i);
+			if ((c >= '0') && (c <= '9') && (digits < MAX_DIGITS)) {
+				mantissa = (mantissa * 10) + (c - '0');
+				digits++;
+				if (dot) {
+					scale++;
+				}
+			} else if ((c == '.') && !dot) {
+				dot = true;
+			} else {
+				return Float.parseFloat(value);
+			}
+		}
+
+		if (digits == 0) {
+			throw new NumberFormatException("Invalid number : " + value);
+		}
+
+		float result = (float) (mantissa / Math.pow(10, scale));
+		return negative ? -result : result;
+	}
+
+	/**
+	 * @param value
+	 *            a value starting with an integer
+	 * @param end
+	 *            the end of the integer in the value
+	 * @return the integer
+	 * @throws NumberFormatException
+	 *             if the value does not start with an integer
+	 */
+	private static int parseInt(final String value, final int end) {
+		int i = 0;
+		boolean negative = false;
+		if ((end > 0) && ((value.charAt(0) == '-') || (value.charAt(0) == '+'))) {
+			negative = (value.charAt(0) == '-');
+			i++;
+		}
+		if (i >= end) {
+			throw new NumberFormatException("Invalid number : " + value);
+		}
+
+		long result = 0;
+		for (; i < end; ++i) {
+			char c = value.charAt(i);
+			if ((c < '0') || (c > '9')) {
+				throw new NumberFormatException("Invalid number : " + value);
+			}
+			result = (result * 10) + (c - '0');
+			if (result > (1L << 31)) {
+				throw new NumberFormatException("Number too large : " + value);
+			}
+		}
+
+		if (negative) {
+			result = -result;
+		} else if (result > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Number too large : " + value);
+		}
+		return (int) result;
+	}
+
+	/** the digits read before falling back to Float.parseFloat */
+	private static final int MAX_DIGITS = 18;
+
+	private Dimensions() {
+	}
+}
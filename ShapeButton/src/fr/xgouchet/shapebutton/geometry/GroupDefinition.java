@@ -0,0 +1,83 @@
+package fr.xgouchet.shapebutton.geometry;
+
+/**
+ * The attributes of a group node read from a shapes xml file : its id and
+ * its transform. Instances are reused by the {@link ShapeXmlReader}, and only
+ * valid during the callback receiving them.
+ */
+public class GroupDefinition {
+
+	public GroupDefinition() {
+		reset();
+	}
+
+	/**
+	 * Restores the default values
+	 */
+	void reset() {
+		mId = null;
+		mX = mY = 0;
+		mAngle = mPivotX = mPivotY = 0;
+		mScaleX = mScaleY = 1;
+	}
+
+	/**
+	 * @return the group id (or null)
+	 */
+	public String getId() {
+		return mId;
+	}
+
+	/**
+	 * @return the x translation (in pixels)
+	 */
+	public int getX() {
+		return mX;
+	}
+
+	/**
+	 * @return the y translation (in pixels)
+	 */
+	public int getY() {
+		return mY;
+	}
+
+	/**
+	 * @return the rotation around the pivot (degrees)
+	 */
+	public float getAngle() {
+		return mAngle;
+	}
+
+	/**
+	 * @return the horizontal scale around the pivot
+	 */
+	public float getScaleX() {
+		return mScaleX;
+	}
+
+	/**
+	 * @return the vertical scale around the pivot
+	 */
+	public float getScaleY() {
+		return mScaleY;
+	}
+
+	/**
+	 * @return the x of the pivot (in pixels, in the group coordinates)
+	 */
+	public float getPivotX() {
+		return mPivotX;
+	}
+
+	/**
+	 * @return the y of the pivot (in pixels, in the group coordinates)
+	 */
+	public float getPivotY() {
+		return mPivotY;
+	}
+
+	String mId;
+	int mX, mY;
+	float mAngle, mScaleX, mScaleY, mPivotX, mPivotY;
+}
@@ -0,0 +1,778 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A parsed SVG path data string (the d attribute of a path), reduced to
+ * absolute move / line / quad / cubic / close commands, and flattened into
+ * polygons for hit testing.
+ *
+ * Instances are immutable : they are cached by string with
+ * {@link #obtain(String)} and shared by all the shapes using the same path.
+ * Shapes scale the path to their size when replaying or testing it, the
+ * string is never parsed again.
+ */
+public final class PathData {
+
+	/**
+	 * Receives the commands of a path when it is replayed
+	 */
+	public interface PathSink {
+		void moveTo(float x, float y);
+
+		void lineTo(float x, float y);
+
+		void quadTo(float x1, float y1, float x2, float y2);
+
+		void cubicTo(float x1, float y1, float x2, float y2, float x3,
+				float y3);
+
+		void close();
+	}
+
+	/** the maximum number of cached paths */
+	public static final int MAX_CACHE_SIZE = 256;
+
+	/**
+	 * @param d
+	 *            the SVG path data
+	 * @return the parsed path (shared with the other users of the same
+	 *         string)
+	 * @throws IllegalArgumentException
+	 *             if the path data is invalid
+	 */
+	public static PathData obtain(final String d) {
+		synchronized (CACHE) {
+			PathData data = CACHE.get(d);
+			if (data == null) {
+				data = new PathData(d);
+				CACHE.put(d, data);
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Replays the path, scaled to fit the given size
+	 *
+	 * @param sink
+	 *            the sink receiving the commands
+	 * @param width
+	 *            the width the path bounds are scaled to
+	 * @param height
+	 *            the height the path bounds are scaled to
+	 */
+	public void replay(final PathSink sink, final float width,
+			final float height) {
+		final float sx = getScaleX(width), sy = getScaleY(height);
+		final float dx = -mLeft * sx, dy = -mTop * sy;
+		final float[] c = mCoords;
+
+		int k = 0;
+		for (int i = 0; i < mOpsCount; ++i) {
+			switch (mOps[i]) {
+			case OP_MOVE:
+				sink.moveTo((c[k] * sx) + dx, (c[k + 1] * sy) + dy);
+				k += 2;
+				break;
+			case OP_LINE:
+				sink.lineTo((c[k] * sx) + dx, (c[k + 1] * sy) + dy);
+				k += 2;
+				break;
+			case OP_QUAD:
+				sink.quadTo((c[k] * sx) + dx, (c[k + 1] * sy) + dy,
+						(c[k + 2] * sx) + dx, (c[k + 3] * sy) + dy);
+				k += 4;
+				break;
+			case OP_CUBIC:
+				sink.cubicTo((c[k] * sx) + dx, (c[k + 1] * sy) + dy,
+						(c[k + 2] * sx) + dx, (c[k + 3] * sy) + dy,
+						(c[k + 4] * sx) + dx, (c[k + 5] * sy) + dy);
+				k += 6;
+				break;
+			case OP_CLOSE:
+				sink.close();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @param x
+	 *            x in the scaled coordinates (0 to width)
+	 * @param y
+	 *            y in the scaled coordinates (0 to height)
+	 * @param width
+	 *            the width the path bounds are scaled to
+	 * @param height
+	 *            the height the path bounds are scaled to
+	 * @return if the point is inside the path (non zero winding rule)
+	 */
+	public boolean contains(final float x, final float y, final float width,
+			final float height) {
+		final float sx = getScaleX(width), sy = getScaleY(height);
+		if ((sx == 0) || (sy == 0)) {
+			return false;
+		}
+
+		// test in the path coordinates
+		final float px = (x / sx) + mLeft, py = (y / sy) + mTop;
+		final float[] p = mPoints;
+
+		int winding = 0;
+		for (int c = 0; c < mContoursCount; ++c) {
+			int start = mContours[c], end = mContours[c + 1];
+			for (int i = start; i < end; ++i) {
+				int j = (i + 1 < end) ? (i + 1) : start;
+				float y0 = p[i * 2 + 1], y1 = p[j * 2 + 1];
+				if (y0 <= py) {
+					if ((y1 > py) && (isLeft(p, i, j, px, py) > 0)) {
+						winding++;
+					}
+				} else if ((y1 <= py) && (isLeft(p, i, j, px, py) < 0)) {
+					winding--;
+				}
+			}
+		}
+
+		return winding != 0;
+	}
+
+	/**
+	 * @param x
+	 *            x in the scaled coordinates (0 to width)
+	 * @param y
+	 *            y in the scaled coordinates (0 to height)
+	 * @param width
+	 *            the width the path bounds are scaled to
+	 * @param height
+	 *            the height the path bounds are scaled to
+	 * @return the distance from the point to the (scaled) path outline, or 0
+	 *         if the point is inside
+	 */
+	public float distance(final float x, final float y, final float width,
+			final float height) {
+		if (contains(x, y, width, height)) {
+			return 0;
+		}
+
+		final float sx = getScaleX(width), sy = getScaleY(height);
+		final float[] p = mPoints;
+
+		float best = Float.MAX_VALUE;
+		for (int c = 0; c < mContoursCount; ++c) {
+			int start = mContours[c], end = mContours[c + 1];
+			for (int i = start; i < end; ++i) {
+				int j = (i + 1 < end) ? (i + 1) : start;
+				float ax = (p[i * 2] - mLeft) * sx, ay = (p[i * 2 + 1] - mTop)
+						* sy;
+				float bx = (p[j * 2] - mLeft) * sx, by = (p[j * 2 + 1] - mTop)
+						* sy;
+				best = Math.min(best,
+						ShapeGeometry.getSegmentDistance(x, y, ax, ay, bx, by));
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * @return the width of the path bounds (in the path coordinates)
+	 */
+	public float getWidth() {
+		return mRight - mLeft;
+	}
+
+	/**
+	 * @return the height of the path bounds (in the path coordinates)
+	 */
+	public float getHeight() {
+		return mBottom - mTop;
+	}
+
+	/**
+	 * @return the original path data string
+	 */
+	public String getPathString() {
+		return mPathString;
+	}
+
+	private float getScaleX(final float width) {
+		float w = mRight - mLeft;
+		return (w > 0) ? (width / w) : 0;
+	}
+
+	private float getScaleY(final float height) {
+		float h = mBottom - mTop;
+		return (h > 0) ? (height / h) : 0;
+	}
+
+	/**
+	 * @return positive if p is left of the edge (i, j), negative if right
+	 */
+	private static float isLeft(final float[] p, final int i, final int j,
+			final float px, final float py) {
+		return ((p[j * 2] - p[i * 2]) * (py - p[i * 2 + 1]))
+				- ((px - p[i * 2]) * (p[j * 2 + 1] - p[i * 2 + 1]));
+	}
+
+	// ------------------------------------------------------------------------
+	// Parsing
+	// ------------------------------------------------------------------------
+
+	/**
+	 * @param d
+	 *            the SVG path data
+	 */
+	private PathData(final String d) {
+		mPathString = d;
+		mOps = new byte[16];
+		mCoords = new float[64];
+		mPoints = new float[64];
+		mContours = new int[4];
+
+		parse(d);
+		flatten();
+
+		mLeft = mTop = Float.MAX_VALUE;
+		mRight = mBottom = -Float.MAX_VALUE;
+		for (int i = 0; i < mPointsCount; ++i) {
+			mLeft = Math.min(mLeft, mPoints[i * 2]);
+			mTop = Math.min(mTop, mPoints[i * 2 + 1]);
+			mRight = Math.max(mRight, mPoints[i * 2]);
+			mBottom = Math.max(mBottom, mPoints[i * 2 + 1]);
+		}
+		if (mPointsCount == 0) {
+			mLeft = mTop = mRight = mBottom = 0;
+		}
+	}
+
+	/**
+	 * Parses the path data into absolute commands
+	 */
+	private void parse(final String d) {
+		mString = d;
+		mPos = 0;
+
+		float cx = 0, cy = 0; // current point
+		float sx = 0, sy = 0; // subpath start
+		float lcx = 0, lcy = 0; // last control point (for S / T)
+		char previous = ' ';
+		char command = ' ';
+
+		skipSeparators();
+		while (mPos < mString.length()) {
+			char c = mString.charAt(mPos);
+			if (isCommand(c)) {
+				command = c;
+				mPos++;
+			} else if ((command == ' ') || (command == 'z')
+					|| (command == 'Z')) {
+				throw new IllegalArgumentException("Invalid path data at "
+						+ mPos + " : " + d);
+			} else if (command == 'M') {
+				// implicit lineto after a moveto
+				command = 'L';
+			} else if (command == 'm') {
+				command = 'l';
+			}
+
+			boolean relative = Character.isLowerCase(command);
+			float ox = relative ? cx : 0, oy = relative ? cy : 0;
+			float x1, y1, x2, y2, x, y;
+
+			switch (Character.toUpperCase(command)) {
+			case 'M':
+				cx = sx = ox + readNumber();
+				cy = sy = oy + readNumber();
+				addOp(OP_MOVE, cx, cy);
+				lcx = cx;
+				lcy = cy;
+				break;
+			case 'L':
+				cx = ox + readNumber();
+				cy = oy + readNumber();
+				addOp(OP_LINE, cx, cy);
+				lcx = cx;
+				lcy = cy;
+				break;
+			case 'H':
+				cx = ox + readNumber();
+				addOp(OP_LINE, cx, cy);
+				lcx = cx;
+				lcy = cy;
+				break;
+			case 'V':
+				cy = oy + readNumber();
+				addOp(OP_LINE, cx, cy);
+				lcx = cx;
+				lcy = cy;
+				break;
+			case 'C':
+				x1 = ox + readNumber();
+				y1 = oy + readNumber();
+				x2 = ox + readNumber();
+				y2 = oy + readNumber();
+				x = ox + readNumber();
+				y = oy + readNumber();
+				addCubic(x1, y1, x2, y2, x, y);
+				lcx = x2;
+				lcy = y2;
+				cx = x;
+				cy = y;
+				break;
+			case 'S':
+				if ("CcSs".indexOf(previous) >= 0) {
+					x1 = (2 * cx) - lcx;
+					y1 = (2 * cy) - lcy;
+				} else {
+					x1 = cx;
+					y1 = cy;
+				}
+				x2 = ox + readNumber();
+				y2 = oy + readNumber();
+				x = ox + readNumber();
+				y = oy + readNumber();
+				addCubic(x1, y1, x2, y2, x, y);
+				lcx = x2;
+				lcy = y2;
+				cx = x;
+				cy = y;
+				break;
+			case 'Q':
+				x1 = ox + readNumber();
+				y1 = oy + readNumber();
+				x = ox + readNumber();
+				y = oy + readNumber();
+				addQuad(x1, y1, x, y);
+				lcx = x1;
+				lcy = y1;
+				cx = x;
+				cy = y;
+				break;
+			case 'T':
+				if ("QqTt".indexOf(previous) >= 0) {
+					x1 = (2 * cx) - lcx;
+					y1 = (2 * cy) - lcy;
+				} else {
+					x1 = cx;
+					y1 = cy;
+				}
+				x = ox + readNumber();
+				y = oy + readNumber();
+				addQuad(x1, y1, x, y);
+				lcx = x1;
+				lcy = y1;
+				cx = x;
+				cy = y;
+				break;
+			case 'A':
+				float rx = Math.abs(readNumber());
+				float ry = Math.abs(readNumber());
+				float rotation = readNumber();
+				boolean largeArc = readFlag();
+				boolean sweep = readFlag();
+				x = ox + readNumber();
+				y = oy + readNumber();
+				addArc(cx, cy, rx, ry, rotation, largeArc, sweep, x, y);
+				cx = lcx = x;
+				cy = lcy = y;
+				break;
+			case 'Z':
+				addOp(OP_CLOSE);
+				cx = lcx = sx;
+				cy = lcy = sy;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown path command "
+						+ command + " : " + d);
+			}
+
+			previous = command;
+			skipSeparators();
+		}
+
+		mString = null;
+	}
+
+	/**
+	 * Converts an SVG elliptical arc to cubic curves (see the SVG
+	 * implementation notes, F.6)
+	 */
+	private void addArc(final float x0, final float y0, float rx, float ry,
+			final float rotation, final boolean largeArc, final boolean sweep,
+			final float x, final float y) {
+		if ((x0 == x) && (y0 == y)) {
+			return;
+		}
+		if ((rx == 0) || (ry == 0)) {
+			addOp(OP_LINE, x, y);
+			return;
+		}
+
+		double phi = Math.toRadians(rotation);
+		double cos = Math.cos(phi), sin = Math.sin(phi);
+
+		// step 1 : compute (x1', y1')
+		double dx = (x0 - x) / 2.0, dy = (y0 - y) / 2.0;
+		double x1p = (cos * dx) + (sin * dy);
+		double y1p = (-sin * dx) + (cos * dy);
+
+		// scale up the radii if needed
+		double lambda = ((x1p * x1p) / (rx * rx)) + ((y1p * y1p) / (ry * ry));
+		if (lambda > 1) {
+			rx *= (float) Math.sqrt(lambda);
+			ry *= (float) Math.sqrt(lambda);
+		}
+
+		// step 2 : compute (cx', cy')
+		double rxs = rx * rx, rys = ry * ry;
+		double num = (rxs * rys) - (rxs * y1p * y1p) - (rys * x1p * x1p);
+		double den = (rxs * y1p * y1p) + (rys * x1p * x1p);
+		double coef = (den == 0) ? 0 : Math.sqrt(Math.max(0, num / den));
+		if (largeArc == sweep) {
+			coef = -coef;
+		}
+		double cxp = coef * ((rx * y1p) / ry);
+		double cyp = coef * -((ry * x1p) / rx);
+
+		// step 3 : compute (cx, cy)
+		double cx = (cos * cxp) - (sin * cyp) + ((x0 + x) / 2.0);
+		double cy = (sin * cxp) + (cos * cyp) + ((y0 + y) / 2.0);
+
+		// step 4 : compute the angles
+		double theta = angle(1, 0, (x1p - cxp) / rx, (y1p - cyp) / ry);
+		double delta = angle((x1p - cxp) / rx, (y1p - cyp) / ry, (-x1p - cxp)
+				/ rx, (-y1p - cyp) / ry);
+		if (!sweep && (delta > 0)) {
+			delta -= 2 * Math.PI;
+		} else if (sweep && (delta < 0)) {
+			delta += 2 * Math.PI;
+		}
+
+		// split in segments of at most 90 degrees
+		int segments = (int) Math.ceil(Math.abs(delta) / (Math.PI / 2));
+		double step = delta / segments;
+		double t = (4.0 / 3.0) * Math.tan(step / 4);
+
+		double a = theta;
+		double ca = Math.cos(a), sa = Math.sin(a);
+		for (int i = 0; i < segments; ++i) {
+			double b = a + step;
+			double cb = Math.cos(b), sb = Math.sin(b);
+
+			// control points on the unit circle, then mapped to the ellipse
+			double ux1 = ca - (t * sa), uy1 = sa + (t * ca);
+			double ux2 = cb + (t * sb), uy2 = sb - (t * cb);
+
+			addCubic(mapX(ux1, uy1, rx, ry, cos, sin, cx),
+					mapY(ux1, uy1, rx, ry, cos, sin, cy),
+					mapX(ux2, uy2, rx, ry, cos, sin, cx),
+					mapY(ux2, uy2, rx, ry, cos, sin, cy),
+					(i == segments - 1) ? x : mapX(cb, sb, rx, ry, cos, sin, cx),
+					(i == segments - 1) ? y : mapY(cb, sb, rx, ry, cos, sin, cy));
+
+			a = b;
+			ca = cb;
+			sa = sb;
+		}
+	}
+
+	private static float mapX(final double ux, final double uy,
+			final float rx, final float ry, final double cos, final double sin,
+			final double cx) {
+		return (float) ((cos * rx * ux) - (sin * ry * uy) + cx);
+	}
+
+	private static float mapY(final double ux, final double uy,
+			final float rx, final float ry, final double cos, final double sin,
+			final double cy) {
+		return (float) ((sin * rx * ux) + (cos * ry * uy) + cy);
+	}
+
+	/**
+	 * @return the signed angle between vectors u and v
+	 */
+	private static double angle(final double ux, final double uy,
+			final double vx, final double vy) {
+		return Math.atan2((ux * vy) - (uy * vx), (ux * vx) + (uy * vy));
+	}
+
+	private void addCubic(final float x1, final float y1, final float x2,
+			final float y2, final float x, final float y) {
+		ensureCoords(6);
+		mCoords[mCoordsCount++] = x1;
+		mCoords[mCoordsCount++] = y1;
+		mCoords[mCoordsCount++] = x2;
+		mCoords[mCoordsCount++] = y2;
+		mCoords[mCoordsCount++] = x;
+		mCoords[mCoordsCount++] = y;
+		addOp(OP_CUBIC);
+	}
+
+	private void addQuad(final float x1, final float y1, final float x,
+			final float y) {
+		ensureCoords(4);
+		mCoords[mCoordsCount++] = x1;
+		mCoords[mCoordsCount++] = y1;
+		mCoords[mCoordsCount++] = x;
+		mCoords[mCoordsCount++] = y;
+		addOp(OP_QUAD);
+	}
+
+	private void addOp(final byte op, final float x, final float y) {
+		ensureCoords(2);
+		mCoords[mCoordsCount++] = x;
+		mCoords[mCoordsCount++] = y;
+		addOp(op);
+	}
+
+	private void addOp(final byte op) {
+		if (mOpsCount == mOps.length) {
+			byte[] ops = new byte[mOps.length * 2];
+			System.arraycopy(mOps, 0, ops, 0, mOpsCount);
+			mOps = ops;
+		}
+		mOps[mOpsCount++] = op;
+	}
+
+	private void ensureCoords(final int count) {
+		if (mCoordsCount + count > mCoords.length) {
+			float[] coords = new float[Math.max(mCoords.length * 2,
+					mCoordsCount + count)];
+			System.arraycopy(mCoords, 0, coords, 0, mCoordsCount);
+			mCoords = coords;
+		}
+	}
+
+	private static boolean isCommand(final char c) {
+		return "MmLlHhVvCcSsQqTtAaZz".indexOf(c) >= 0;
+	}
+
+	private void skipSeparators() {
+		while (mPos < mString.length()) {
+			char c = mString.charAt(mPos);
+			if ((c == ',') || Character.isWhitespace(c)) {
+				mPos++;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads an arc flag, which can be written without separator ("a1 1 0 01
+	 * 5 5")
+	 */
+	private boolean readFlag() {
+		skipSeparators();
+		if (mPos >= mString.length()) {
+			throw new IllegalArgumentException("Missing arc flag : "
+					+ mString);
+		}
+
+		char c = mString.charAt(mPos++);
+		if ((c != '0') && (c != '1')) {
+			throw new IllegalArgumentException("Invalid arc flag " + c
+					+ " : " + mString);
+		}
+		return c == '1';
+	}
+
+	/**
+	 * Reads a number ("1", "-1.5", ".5", "1e-3"), which can be written without
+	 * separator after the previous one ("1-2", "0.5.5")
+	 */
+	private float readNumber() {
+		skipSeparators();
+
+		final int start = mPos;
+		final int length = mString.length();
+		boolean dot = false, exponent = false;
+
+		if ((mPos < length)
+				&& ((mString.charAt(mPos) == '-') || (mString.charAt(mPos) == '+'))) {
+			mPos++;
+		}
+
+		while (mPos < length) {
+			char c = mString.charAt(mPos);
+			if ((c >= '0') && (c <= '9')) {
+				mPos++;
+			} else if ((c == '.') && !dot && !exponent) {
+				dot = true;
+				mPos++;
+			} else if (((c == 'e') || (c == 'E')) && !exponent) {
+				exponent = true;
+				mPos++;
+				if ((mPos < length)
+						&& ((mString.charAt(mPos) == '-') || (mString
+								.charAt(mPos) == '+'))) {
+					mPos++;
+				}
+			} else {
+				break;
+			}
+		}
+
+		if (start == mPos) {
+			throw new IllegalArgumentException("Expected a number at " + start
+					+ " : " + mString);
+		}
+
+		try {
+			return Float.parseFloat(mString.substring(start, mPos));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number at " + start
+					+ " : " + mString, e);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Flattening
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Flattens the commands into polygons (one per subpath)
+	 */
+	private void flatten() {
+		float cx = 0, cy = 0;
+		int k = 0;
+
+		for (int i = 0; i < mOpsCount; ++i) {
+			float[] c = mCoords;
+			switch (mOps[i]) {
+			case OP_MOVE:
+				startContour();
+				cx = c[k];
+				cy = c[k + 1];
+				addPoint(cx, cy);
+				k += 2;
+				break;
+			case OP_LINE:
+				ensureContour(cx, cy);
+				cx = c[k];
+				cy = c[k + 1];
+				addPoint(cx, cy);
+				k += 2;
+				break;
+			case OP_QUAD:
+				ensureContour(cx, cy);
+				for (int s = 1; s <= CURVE_SEGMENTS; ++s) {
+					float t = (float) s / CURVE_SEGMENTS, u = 1 - t;
+					addPoint((u * u * cx) + (2 * u * t * c[k]) + (t * t * c[k + 2]),
+							(u * u * cy) + (2 * u * t * c[k + 1])
+									+ (t * t * c[k + 3]));
+				}
+				cx = c[k + 2];
+				cy = c[k + 3];
+				k += 4;
+				break;
+			case OP_CUBIC:
+				ensureContour(cx, cy);
+				for (int s = 1; s <= CURVE_SEGMENTS; ++s) {
+					float t = (float) s / CURVE_SEGMENTS, u = 1 - t;
+					float a = u * u * u, b = 3 * u * u * t, d = 3 * u * t * t, e = t
+							* t * t;
+					addPoint((a * cx) + (b * c[k]) + (d * c[k + 2])
+							+ (e * c[k + 4]), (a * cy) + (b * c[k + 1])
+							+ (d * c[k + 3]) + (e * c[k + 5]));
+				}
+				cx = c[k + 4];
+				cy = c[k + 5];
+				k += 6;
+				break;
+			case OP_CLOSE:
+				// polygons are implicitly closed, the next command starts
+				// from the subpath start
+				if (mContoursCount > 0) {
+					int start = mContours[mContoursCount - 1];
+					cx = mPoints[start * 2];
+					cy = mPoints[start * 2 + 1];
+				}
+				mContourOpen = false;
+				break;
+			}
+		}
+
+		// end index of the last contour
+		if (mContours.length < mContoursCount + 1) {
+			int[] contours = new int[mContoursCount + 1];
+			System.arraycopy(mContours, 0, contours, 0, mContoursCount);
+			mContours = contours;
+		}
+		mContours[mContoursCount] = mPointsCount;
+	}
+
+	private void startContour() {
+		if (mContoursCount + 1 >= mContours.length) {
+			int[] contours = new int[mContours.length * 2];
+			System.arraycopy(mContours, 0, contours, 0, mContoursCount);
+			mContours = contours;
+		}
+		mContours[mContoursCount++] = mPointsCount;
+		mContourOpen = true;
+	}
+
+	/**
+	 * Starts a new contour at the current point when drawing after a close
+	 */
+	private void ensureContour(final float cx, final float cy) {
+		if (!mContourOpen) {
+			startContour();
+			addPoint(cx, cy);
+		}
+	}
+
+	private void addPoint(final float x, final float y) {
+		if ((mPointsCount + 1) * 2 > mPoints.length) {
+			float[] points = new float[mPoints.length * 2];
+			System.arraycopy(mPoints, 0, points, 0, mPointsCount * 2);
+			mPoints = points;
+		}
+		mPoints[mPointsCount * 2] = x;
+		mPoints[mPointsCount * 2 + 1] = y;
+		mPointsCount++;
+	}
+
+	private static final byte OP_MOVE = 0;
+	private static final byte OP_LINE = 1;
+	private static final byte OP_QUAD = 2;
+	private static final byte OP_CUBIC = 3;
+	private static final byte OP_CLOSE = 4;
+
+	/** the number of segments used to flatten each curve */
+	private static final int CURVE_SEGMENTS = 16;
+
+	/** LRU cache of the parsed paths */
+	private static final Map<String, PathData> CACHE = new LinkedHashMap<String, PathData>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(
+				final Map.Entry<String, PathData> eldest) {
+			return size() > MAX_CACHE_SIZE;
+		}
+	};
+
+	final private String mPathString;
+
+	private byte[] mOps;
+	private int mOpsCount;
+	private float[] mCoords;
+	private int mCoordsCount;
+
+	private float[] mPoints;
+	private int mPointsCount;
+	private int[] mContours;
+	private int mContoursCount;
+	private boolean mContourOpen;
+
+	private float mLeft, mTop, mRight, mBottom;
+
+	// parser state
+	private String mString;
+	private int mPos;
+}
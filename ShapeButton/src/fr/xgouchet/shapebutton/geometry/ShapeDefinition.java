@@ -0,0 +1,222 @@
+package fr.xgouchet.shapebutton.geometry;
+
+/**
+ * The attributes of a shape node read from a shapes xml file (geometry,
+ * colors, label, image and path). Instances are reused by the
+ * {@link ShapeXmlReader}, and only valid during the callback receiving them.
+ *
+ * Colors and label sizes are optional (see {@link #hasBaseColor()}...), the
+ * other values default to 0 / null.
+ */
+public class ShapeDefinition {
+
+	public ShapeDefinition() {
+		reset(ShapeType.rect);
+	}
+
+	/**
+	 * Restores the default values
+	 *
+	 * @param type
+	 *            the type of the shape
+	 */
+	void reset(final ShapeType type) {
+		mType = type;
+		mId = null;
+		mX = mY = mZ = mWidth = mHeight = 0;
+		mAngle = mStart = mEnd = mThickness = 0;
+		mHasBase = mHasAccent = mHasLabelColor = mHasLabelSize = false;
+		mBase = mAccent = mLabelColor = 0;
+		mLabelSize = 0;
+		mImage = mPathData = mLabel = mLabelStyle = null;
+	}
+
+	/**
+	 * Applies the geometry of this definition
+	 *
+	 * @param geometry
+	 *            the geometry of a shape of the same type
+	 * @throws IllegalArgumentException
+	 *             if the path data is invalid
+	 */
+	public void applyTo(final ShapeGeometry geometry) {
+		geometry.setPosition(mX, mY);
+		geometry.setZOrder(mZ);
+		geometry.setSize(mWidth, mHeight);
+		geometry.setAngle(mAngle);
+		geometry.setRange(mStart, mEnd);
+		geometry.setThickness(mThickness);
+		geometry.setPathData((mPathData == null) ? null : PathData
+				.obtain(mPathData));
+	}
+
+	/**
+	 * @return the type of the shape
+	 */
+	public ShapeType getType() {
+		return mType;
+	}
+
+	/**
+	 * @return the shape id (or null)
+	 */
+	public String getId() {
+		return mId;
+	}
+
+	/**
+	 * @return the x position (in pixels)
+	 */
+	public int getX() {
+		return mX;
+	}
+
+	/**
+	 * @return the y position (in pixels)
+	 */
+	public int getY() {
+		return mY;
+	}
+
+	/**
+	 * @return the z order
+	 */
+	public int getZOrder() {
+		return mZ;
+	}
+
+	/**
+	 * @return the width (in pixels)
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 * @return the height (in pixels)
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * @return the rotation angle (degrees)
+	 */
+	public int getAngle() {
+		return mAngle;
+	}
+
+	/**
+	 * @return the start of the range (degrees)
+	 */
+	public int getStart() {
+		return mStart;
+	}
+
+	/**
+	 * @return the end of the range (degrees)
+	 */
+	public int getEnd() {
+		return mEnd;
+	}
+
+	/**
+	 * @return the thickness (in pixels)
+	 */
+	public int getThickness() {
+		return mThickness;
+	}
+
+	/**
+	 * @return if a base color is set
+	 */
+	public boolean hasBaseColor() {
+		return mHasBase;
+	}
+
+	/**
+	 * @return the base color (ARGB)
+	 */
+	public int getBaseColor() {
+		return mBase;
+	}
+
+	/**
+	 * @return if an accent color is set
+	 */
+	public boolean hasAccentColor() {
+		return mHasAccent;
+	}
+
+	/**
+	 * @return the accent color (ARGB)
+	 */
+	public int getAccentColor() {
+		return mAccent;
+	}
+
+	/**
+	 * @return the image reference, as written (eg : @drawable/foo), or null
+	 */
+	public String getImage() {
+		return mImage;
+	}
+
+	/**
+	 * @return the SVG path data (or null)
+	 */
+	public String getPathData() {
+		return mPathData;
+	}
+
+	/**
+	 * @return the label (or null)
+	 */
+	public String getLabel() {
+		return mLabel;
+	}
+
+	/**
+	 * @return if a label size is set
+	 */
+	public boolean hasLabelSize() {
+		return mHasLabelSize;
+	}
+
+	/**
+	 * @return the label size (in pixels)
+	 */
+	public float getLabelSize() {
+		return mLabelSize;
+	}
+
+	/**
+	 * @return if a label color is set
+	 */
+	public boolean hasLabelColor() {
+		return mHasLabelColor;
+	}
+
+	/**
+	 * @return the label color (ARGB)
+	 */
+	public int getLabelColor() {
+		return mLabelColor;
+	}
+
+	/**
+	 * @return the label style (normal, bold, italic, bold_italic), or null
+	 */
+	public String getLabelStyle() {
+		return mLabelStyle;
+	}
+
+	ShapeType mType;
+	String mId;
+	int mX, mY, mZ, mWidth, mHeight;
+	int mAngle, mStart, mEnd, mThickness;
+	boolean mHasBase, mHasAccent, mHasLabelColor, mHasLabelSize;
+	int mBase, mAccent, mLabelColor;
+	float mLabelSize;
+	String mImage, mPathData, mLabel, mLabelStyle;
+}
@@ -0,0 +1,561 @@
+package fr.xgouchet.shapebutton.geometry;
+
+/**
+ * Holds the geometry of a single shape (type, position, size, rotation,
+ * range...) and the computations done on it : hit-testing, bounds and z-order.
+ *
+ * This class does not depend on the Android framework, so that it can be used
+ * (and measured) on a plain JVM.
+ */
+public class ShapeGeometry implements Comparable<ShapeGeometry> {
+
+	public static final float DEG_TO_RAD = (float) (Math.PI / 180.0);
+
+	/**
+	 * @param shapeType
+	 *            the type of the shape
+	 */
+	public ShapeGeometry(final ShapeType shapeType) {
+		mShape = shapeType;
+		mCos = 1.0f;
+		mSin = 0.0f;
+		mStartCos = mEndCos = 1.0f;
+		mStartSin = mEndSin = 0.0f;
+	}
+
+	/**
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	public int compareTo(final ShapeGeometry another) {
+		return mZOrder - another.mZOrder;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return if the point is inside the current shape
+	 */
+	public boolean contains(final float x, final float y) {
+		float x1, y1, cx, cy, x2, y2;
+
+		cx = mX + (mWidth / 2);
+		cy = mY + (mHeight / 2);
+
+		x1 = mCos * (x - cx) + mSin * (y - cy);
+		y1 = -mSin * (x - cx) + mCos * (y - cy);
+
+		boolean res;
+		switch (mShape) {
+		case rect:
+			res = (Math.abs(x1) <= (mWidth / 2.0f));
+			res &= (Math.abs(y1) <= (mHeight / 2.0f));
+			break;
+		case triangle:
+			res = isInTriangle(x1, y1, mWidth / 2.0f, mHeight / 2.0f);
+			break;
+		case oval:
+			x2 = x1 / (mWidth / 2.0f);
+			y2 = y1 / (mHeight / 2.0f);
+			res = ((x2 * x2) + (y2 * y2) < 1);
+			break;
+		case arc:
+			x2 = x1 / (mWidth / 2.0f);
+			y2 = y1 / (mHeight / 2.0f);
+			res = ((x2 * x2) + (y2 * y2) < 1);
+
+			if (mThickness > 0) {
+				x2 = x1 / ((mWidth / 2.0f) - mThickness);
+				y2 = y1 / ((mHeight / 2.0f) - mThickness);
+				res &= ((x2 * x2) + (y2 * y2) > 1);
+			}
+
+			float angle = (float) (Math.atan2(y1, x1) / DEG_TO_RAD);
+			res &= isAngleInRange(angle);
+			break;
+		case path:
+			res = (mPathData != null)
+					&& mPathData.contains(x1 + (mWidth / 2.0f), y1
+							+ (mHeight / 2.0f), mWidth, mHeight);
+			break;
+		default:
+			res = false;
+			break;
+		}
+
+		return res;
+	}
+
+	/**
+	 * Computes the distance from a point to this shape, using cheap analytic
+	 * approximations for the curved shapes (exact for rect and triangle, and
+	 * for path up to the curve flattening).
+	 * 
+	 * @param x
+	 * @param y
+	 * @return the distance from the point to the shape (0 if inside)
+	 */
+	public float distance(final float x, final float y) {
+		float x1, y1, cx, cy, hw, hh, radial;
+
+		cx = mX + (mWidth / 2);
+		cy = mY + (mHeight / 2);
+
+		x1 = mCos * (x - cx) + mSin * (y - cy);
+		y1 = -mSin * (x - cx) + mCos * (y - cy);
+
+		hw = mWidth / 2.0f;
+		hh = mHeight / 2.0f;
+
+		switch (mShape) {
+		case rect:
+			x1 = Math.max(Math.abs(x1) - hw, 0);
+			y1 = Math.max(Math.abs(y1) - hh, 0);
+			return (float) Math.sqrt((x1 * x1) + (y1 * y1));
+		case triangle:
+			if (isInTriangle(x1, y1, hw, hh)) {
+				return 0;
+			}
+			return Math.min(
+					getSegmentDistance(x1, y1, 0, -hh, hw, hh),
+					Math.min(getSegmentDistance(x1, y1, hw, hh, -hw, hh),
+							getSegmentDistance(x1, y1, -hw, hh, 0, -hh)));
+		case oval:
+			return getOutsideDistance(x1, y1, hw, hh);
+		case arc:
+			radial = getOutsideDistance(x1, y1, hw, hh);
+			if (mThickness > 0) {
+				radial = Math.max(radial, getInsideDistance(x1, y1, hw
+						- mThickness, hh - mThickness));
+			}
+
+			float angle = (float) (Math.atan2(y1, x1) / DEG_TO_RAD);
+			if (isAngleInRange(angle)) {
+				return radial;
+			}
+
+			// outside of the range, the closest point is on an end edge
+			return Math.min(getEdgeDistance(x1, y1, mStartCos, mStartSin),
+					getEdgeDistance(x1, y1, mEndCos, mEndSin));
+		case path:
+			if (mPathData == null) {
+				return Float.MAX_VALUE;
+			}
+			return mPathData.distance(x1 + hw, y1 + hh, mWidth, mHeight);
+		default:
+			return Float.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * @param bounds
+	 *            the array to write the axis aligned bounds into (left, top,
+	 *            right, bottom)
+	 * @param offset
+	 *            the offset of the bounds in the array
+	 */
+	public void getBounds(final float[] bounds, final int offset) {
+		float hw, hh, cx, cy;
+		hw = getRealWidth() / 2.0f;
+		hh = getRealHeight() / 2.0f;
+		cx = getCenterX();
+		cy = getCenterY();
+
+		bounds[offset] = cx - hw;
+		bounds[offset + 1] = cy - hh;
+		bounds[offset + 2] = cx + hw;
+		bounds[offset + 3] = cy + hh;
+	}
+
+	/**
+	 * Extends axis aligned bounds with a rectangle given in the shape
+	 * coordinates (relative to the shape's top left corner, before the
+	 * rotation), eg the shape's label
+	 * 
+	 * @param bounds
+	 *            the bounds (left, top, right, bottom) to extend
+	 * @param offset
+	 *            the offset of the bounds in the array
+	 * @param x
+	 *            the x of the rectangle's center
+	 * @param y
+	 *            the y of the rectangle's center
+	 * @param hw
+	 *            the half width of the rectangle
+	 * @param hh
+	 *            the half height of the rectangle
+	 */
+	public void union(final float[] bounds, final int offset, final float x,
+			final float y, final float hw, final float hh) {
+		float dx, dy, cx, cy, ex, ey, cos, sin;
+		dx = x - (mWidth / 2.0f);
+		dy = y - (mHeight / 2.0f);
+		cx = getCenterX() + (mCos * dx) - (mSin * dy);
+		cy = getCenterY() + (mSin * dx) + (mCos * dy);
+
+		cos = Math.abs(mCos);
+		sin = Math.abs(mSin);
+		ex = (cos * hw) + (sin * hh);
+		ey = (sin * hw) + (cos * hh);
+
+		bounds[offset] = Math.min(bounds[offset], cx - ex);
+		bounds[offset + 1] = Math.min(bounds[offset + 1], cy - ey);
+		bounds[offset + 2] = Math.max(bounds[offset + 2], cx + ex);
+		bounds[offset + 3] = Math.max(bounds[offset + 3], cy + ey);
+	}
+
+	/**
+	 * @param angle
+	 *            an angle (degrees)
+	 * @return if the angle is within the start / end range
+	 */
+	public boolean isAngleInRange(final float angle) {
+
+		float min, max, value;
+		min = Math.min(mStart, mEnd);
+		max = Math.max(mStart, mEnd);
+
+		value = angle;
+		while (value < min) {
+			value += 360;
+		}
+
+		return value < max;
+	}
+
+	/**
+	 * @param x
+	 *            x in the shape coordinates (relative to the center)
+	 * @param y
+	 *            y in the shape coordinates (relative to the center)
+	 * @param hw
+	 *            the half width
+	 * @param hh
+	 *            the half height
+	 * @return if the point is inside the triangle with its apex at the top
+	 *         center and its base at the bottom
+	 */
+	private static boolean isInTriangle(final float x, final float y,
+			final float hw, final float hh) {
+		if ((y < -hh) || (y > hh) || (hh <= 0)) {
+			return false;
+		}
+
+		// the half width of the triangle grows linearly from the apex
+		return Math.abs(x) <= ((hw * (y + hh)) / (2.0f * hh));
+	}
+
+	/**
+	 * @return the distance from point p to the segment [a, b] (shared with
+	 *         {@link PathData})
+	 */
+	static float getSegmentDistance(final float px, final float py,
+			final float ax, final float ay, final float bx, final float by) {
+		float dx, dy, length, t;
+		dx = bx - ax;
+		dy = by - ay;
+		length = (dx * dx) + (dy * dy);
+
+		if (length <= 0) {
+			t = 0;
+		} else {
+			t = (((px - ax) * dx) + ((py - ay) * dy)) / length;
+			t = Math.max(0, Math.min(1, t));
+		}
+
+		dx = px - (ax + (t * dx));
+		dy = py - (ay + (t * dy));
+		return (float) Math.sqrt((dx * dx) + (dy * dy));
+	}
+
+	/**
+	 * Approximates the distance from a point to an ellipse it is outside of,
+	 * along the ray from the center
+	 * 
+	 * @return the distance, or 0 if the point is inside the ellipse
+	 */
+	private static float getOutsideDistance(final float x, final float y,
+			final float a, final float b) {
+		float r = (float) Math.sqrt((x * x) + (y * y));
+		if ((a <= 0) || (b <= 0)) {
+			return r;
+		}
+
+		float k = (float) Math.sqrt(((x / a) * (x / a)) + ((y / b) * (y / b)));
+		if (k <= 1) {
+			return 0;
+		}
+		return r * (1 - (1 / k));
+	}
+
+	/**
+	 * Approximates the distance from a point to an ellipse it is inside of,
+	 * along the ray from the center
+	 * 
+	 * @return the distance, or 0 if the point is outside the ellipse
+	 */
+	private static float getInsideDistance(final float x, final float y,
+			final float a, final float b) {
+		if ((a <= 0) || (b <= 0)) {
+			return 0;
+		}
+
+		float k = (float) Math.sqrt(((x / a) * (x / a)) + ((y / b) * (y / b)));
+		if (k >= 1) {
+			return 0;
+		} else if (k == 0) {
+			return Math.min(a, b);
+		}
+
+		float r = (float) Math.sqrt((x * x) + (y * y));
+		return r * ((1 / k) - 1);
+	}
+
+	/**
+	 * @return the distance from a point to the arc edge at the given angle
+	 */
+	private float getEdgeDistance(final float x, final float y,
+			final float cos, final float sin) {
+		float hw, hh, ix, iy;
+		hw = mWidth / 2.0f;
+		hh = mHeight / 2.0f;
+
+		if (mThickness > 0) {
+			ix = cos * (hw - mThickness);
+			iy = sin * (hh - mThickness);
+		} else {
+			ix = iy = 0;
+		}
+
+		return getSegmentDistance(x, y, ix, iy, cos * hw, sin * hh);
+	}
+
+	/**
+	 * @return the needed width
+	 */
+	public int getNeededWidth() {
+		float halfwidth = (mWidth / 2);
+
+		float max = getRealWidth() / 2;
+
+		return (int) (mX + halfwidth + max + 0.5f);
+	}
+
+	/**
+	 * @return the needed height
+	 */
+	public int getNeededHeight() {
+		float halfheight = (mHeight / 2);
+
+		float max = getRealHeight() / 2.0f;
+
+		return (int) (mY + halfheight + max + 0.5f);
+	}
+
+	/**
+	 * @return the x coordinate of the shape's center
+	 */
+	public float getCenterX() {
+		return mX + (mWidth / 2);
+	}
+
+	/**
+	 * @return the y coordinate of the shape's center
+	 */
+	public float getCenterY() {
+		return mY + (mHeight / 2);
+	}
+
+	/**
+	 * @param left
+	 * @param top
+	 * @param right
+	 * @param bottom
+	 * @return if the axis aligned bounds of this shape intersect the given
+	 *         rectangle
+	 */
+	public boolean intersects(final float left, final float top,
+			final float right, final float bottom) {
+		float hw, hh, cx, cy;
+		hw = getRealWidth() / 2.0f;
+		hh = getRealHeight() / 2.0f;
+		cx = getCenterX();
+		cy = getCenterY();
+
+		return (cx - hw < right) && (cx + hw > left) && (cy - hh < bottom)
+				&& (cy + hh > top);
+	}
+
+	/**
+	 * @return the height axis aligned
+	 */
+	public float getRealHeight() {
+		float cos = Math.abs(mCos);
+		float sin = Math.abs(mSin);
+		return ((sin * mWidth) + (cos * mHeight));
+	}
+
+	/**
+	 * @return the width axis aligned
+	 */
+	public float getRealWidth() {
+		float cos = Math.abs(mCos);
+		float sin = Math.abs(mSin);
+		return ((cos * mWidth) + (sin * mHeight));
+	}
+
+	/**
+	 * @return the type of the shape
+	 */
+	public ShapeType getType() {
+		return mShape;
+	}
+
+	/**
+	 * @return the path data (for path shapes)
+	 */
+	public PathData getPathData() {
+		return mPathData;
+	}
+
+	/**
+	 * @return the x position
+	 */
+	public int getX() {
+		return mX;
+	}
+
+	/**
+	 * @return the y position
+	 */
+	public int getY() {
+		return mY;
+	}
+
+	/**
+	 * @return the zOrder
+	 */
+	public int getZOrder() {
+		return mZOrder;
+	}
+
+	/**
+	 * @return the width (in pixels)
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 * @return the height (in pixels)
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * @return the rotation angle (degrees)
+	 */
+	public int getAngle() {
+		return mAngle;
+	}
+
+	/**
+	 * @return the start of the range (degrees)
+	 */
+	public int getStart() {
+		return mStart;
+	}
+
+	/**
+	 * @return the end of the range (degrees)
+	 */
+	public int getEnd() {
+		return mEnd;
+	}
+
+	/**
+	 * @return the thickness (in pixels)
+	 */
+	public int getThickness() {
+		return mThickness;
+	}
+
+	/**
+	 * @param x
+	 *            the x position of the shape
+	 * @param y
+	 *            the y position of the shape
+	 */
+	public void setPosition(final int x, final int y) {
+		mX = x;
+		mY = y;
+	}
+
+	/**
+	 * @param width
+	 *            the width of the shape (in pixels)
+	 * @param height
+	 *            the height of the shape (in pixels)
+	 */
+	public void setSize(final int width, final int height) {
+		mWidth = width;
+		mHeight = height;
+	}
+
+	/**
+	 * @param angle
+	 *            the rotation angle (degrees)
+	 */
+	public void setAngle(final int angle) {
+		mAngle = angle;
+		mCos = (float) Math.cos(angle * DEG_TO_RAD);
+		mSin = (float) Math.sin(angle * DEG_TO_RAD);
+	}
+
+	/**
+	 * @param zOrder
+	 *            the zOrder to set
+	 */
+	public void setZOrder(final int zOrder) {
+		mZOrder = zOrder;
+	}
+
+	/**
+	 * Sets a range (angles for arc)
+	 *
+	 * @param start
+	 * @param end
+	 */
+	public void setRange(final int start, final int end) {
+		mStart = start;
+		mEnd = end;
+		mStartCos = (float) Math.cos(start * DEG_TO_RAD);
+		mStartSin = (float) Math.sin(start * DEG_TO_RAD);
+		mEndCos = (float) Math.cos(end * DEG_TO_RAD);
+		mEndSin = (float) Math.sin(end * DEG_TO_RAD);
+	}
+
+	/**
+	 * @param thickness
+	 */
+	public void setThickness(final int thickness) {
+		mThickness = thickness;
+	}
+
+	/**
+	 * @param pathData
+	 *            the path data, scaled to the shape size (for path shapes)
+	 */
+	public void setPathData(final PathData pathData) {
+		mPathData = pathData;
+	}
+
+	final private ShapeType mShape;
+	private PathData mPathData;
+
+	private int mX, mY, mZOrder;
+	private int mWidth, mHeight;
+	private int mAngle, mStart, mEnd, mThickness;
+	private float mCos, mSin;
+	private float mStartCos, mStartSin, mEndCos, mEndSin;
+}
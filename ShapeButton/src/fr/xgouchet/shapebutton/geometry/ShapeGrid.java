@@ -0,0 +1,193 @@
+package fr.xgouchet.shapebutton.geometry;
+
+/**
+ * A uniform grid over the bounds of a set of shapes, used to find the few
+ * shapes near a point without testing all of them.
+ *
+ * Shapes are identified by their index. The cells are stored in a compact
+ * form (an offset per cell into a single index array), and the arrays are
+ * only reallocated when they grow, so rebuilding and querying the grid does
+ * not allocate in the steady state.
+ */
+public class ShapeGrid {
+
+	/** the maximum number of cells on each side of the grid */
+	public static final int MAX_CELLS_PER_SIDE = 128;
+
+	public ShapeGrid() {
+		mBounds = new float[0];
+		mCellStart = new int[1];
+		mItems = new int[0];
+		mStamps = new int[0];
+	}
+
+	/**
+	 * Rebuilds the grid
+	 *
+	 * @param bounds
+	 *            the axis aligned bounds of the shapes (left, top, right,
+	 *            bottom for each shape)
+	 * @param count
+	 *            the number of shapes
+	 */
+	public void build(final float[] bounds, final int count) {
+		mCount = count;
+		mCols = mRows = 0;
+		if (count == 0) {
+			return;
+		}
+
+		if (mBounds.length < count * 4) {
+			mBounds = new float[count * 4];
+			mStamps = new int[count];
+			mStamp = 0;
+		}
+		System.arraycopy(bounds, 0, mBounds, 0, count * 4);
+
+		// grid extent and average shape size
+		float left, top, right, bottom, sum;
+		left = top = Float.MAX_VALUE;
+		right = bottom = -Float.MAX_VALUE;
+		sum = 0;
+		for (int i = 0; i < count * 4; i += 4) {
+			left = Math.min(left, bounds[i]);
+			top = Math.min(top, bounds[i + 1]);
+			right = Math.max(right, bounds[i + 2]);
+			bottom = Math.max(bottom, bounds[i + 3]);
+			sum += (bounds[i + 2] - bounds[i]) + (bounds[i + 3] - bounds[i + 1]);
+		}
+
+		float cellSize = Math.max(1, sum / (2 * count));
+		mLeft = left;
+		mTop = top;
+		mCols = clamp((int) Math.ceil((right - left) / cellSize), 1,
+				MAX_CELLS_PER_SIDE);
+		mRows = clamp((int) Math.ceil((bottom - top) / cellSize), 1,
+				MAX_CELLS_PER_SIDE);
+		mCellWidth = Math.max(1, (right - left) / mCols);
+		mCellHeight = Math.max(1, (bottom - top) / mRows);
+
+		int cells = mCols * mRows;
+		if (mCellStart.length < cells + 1) {
+			mCellStart = new int[cells + 1];
+		}
+		for (int c = 0; c <= cells; ++c) {
+			mCellStart[c] = 0;
+		}
+
+		// count the shapes in each cell
+		int total = 0;
+		for (int i = 0; i < count; ++i) {
+			int c0 = getCol(bounds[i * 4]), c1 = getCol(bounds[i * 4 + 2]);
+			int r0 = getRow(bounds[i * 4 + 1]), r1 = getRow(bounds[i * 4 + 3]);
+			for (int r = r0; r <= r1; ++r) {
+				for (int c = c0; c <= c1; ++c) {
+					mCellStart[(r * mCols) + c + 1]++;
+					total++;
+				}
+			}
+		}
+
+		// prefix sums give each cell's offset
+		for (int c = 0; c < cells; ++c) {
+			mCellStart[c + 1] += mCellStart[c];
+		}
+
+		if (mItems.length < total) {
+			mItems = new int[total];
+		}
+
+		// fill the cells, using each cell's start as a cursor
+		for (int i = 0; i < count; ++i) {
+			int c0 = getCol(bounds[i * 4]), c1 = getCol(bounds[i * 4 + 2]);
+			int r0 = getRow(bounds[i * 4 + 1]), r1 = getRow(bounds[i * 4 + 3]);
+			for (int r = r0; r <= r1; ++r) {
+				for (int c = c0; c <= c1; ++c) {
+					mItems[mCellStart[(r * mCols) + c]++] = i;
+				}
+			}
+		}
+
+		// the cursors now point to the next cell's start : shift them back
+		for (int c = cells; c > 0; --c) {
+			mCellStart[c] = mCellStart[c - 1];
+		}
+		mCellStart[0] = 0;
+	}
+
+	/**
+	 * Finds the shapes whose bounds intersect the given rectangle
+	 *
+	 * @param left
+	 * @param top
+	 * @param right
+	 * @param bottom
+	 * @param result
+	 *            the array receiving the shape indices (must be able to hold
+	 *            all the shapes)
+	 * @return the number of shapes found
+	 */
+	public int query(final float left, final float top, final float right,
+			final float bottom, final int[] result) {
+		if ((mCols == 0) || (right < mLeft) || (bottom < mTop)
+				|| (left > mLeft + (mCols * mCellWidth))
+				|| (top > mTop + (mRows * mCellHeight))) {
+			return 0;
+		}
+
+		if (++mStamp == Integer.MAX_VALUE) {
+			for (int i = 0; i < mCount; ++i) {
+				mStamps[i] = 0;
+			}
+			mStamp = 1;
+		}
+
+		int found = 0;
+		int c0 = getCol(left), c1 = getCol(right);
+		int r0 = getRow(top), r1 = getRow(bottom);
+		for (int r = r0; r <= r1; ++r) {
+			for (int c = c0; c <= c1; ++c) {
+				int cell = (r * mCols) + c;
+				for (int k = mCellStart[cell]; k < mCellStart[cell + 1]; ++k) {
+					int i = mItems[k];
+					if (mStamps[i] == mStamp) {
+						continue;
+					}
+					mStamps[i] = mStamp;
+
+					if ((mBounds[i * 4] <= right) && (mBounds[i * 4 + 2] >= left)
+							&& (mBounds[i * 4 + 1] <= bottom)
+							&& (mBounds[i * 4 + 3] >= top)) {
+						result[found++] = i;
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * @return the number of indexed shapes
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	private int getCol(final float x) {
+		return clamp((int) ((x - mLeft) / mCellWidth), 0, mCols - 1);
+	}
+
+	private int getRow(final float y) {
+		return clamp((int) ((y - mTop) / mCellHeight), 0, mRows - 1);
+	}
+
+	private static int clamp(final int value, final int min, final int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	private float[] mBounds;
+	private int[] mCellStart, mItems, mStamps;
+	private int mCount, mCols, mRows, mStamp;
+	private float mLeft, mTop, mCellWidth, mCellHeight;
+}
@@ -0,0 +1,26 @@
+package fr.xgouchet.shapebutton.geometry;
+
+/**
+ * The kinds of shapes a ShapeButton can hold. The names match the tags used
+ * in the shapes xml files.
+ */
+public enum ShapeType {
+	rect, oval, triangle, arc, path;
+
+	/**
+	 * @param name
+	 *            a tag name
+	 * @return the matching type, or null if the name is not a shape type
+	 */
+	public static ShapeType fromName(final String name) {
+		for (ShapeType type : TYPES) {
+			if (type.name().equals(name)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	/** cached copy of values(), which clones the array on each call */
+	private static final ShapeType[] TYPES = values();
+}
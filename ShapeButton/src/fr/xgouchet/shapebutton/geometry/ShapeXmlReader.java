@@ -0,0 +1,274 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import java.io.IOException;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Reads the shapes xml format into {@link ShapeDefinition} and
+ * {@link GroupDefinition}, in document order.
+ *
+ * This only depends on the XmlPullParser API, so that it runs with the
+ * Android parsers as well as with a portable one (eg : kxml2) on a plain
+ * JVM. The definitions handed to the {@link Handler} are reused for the next
+ * nodes, so reading does not allocate per shape.
+ */
+public class ShapeXmlReader {
+
+	/**
+	 * Receives the nodes read
+	 */
+	public interface Handler {
+		/**
+		 * @param group
+		 *            the group starting (valid during the call only)
+		 */
+		void onGroupStart(GroupDefinition group);
+
+		/**
+		 * Called at the end of the last started group
+		 */
+		void onGroupEnd();
+
+		/**
+		 * @param shape
+		 *            a shape read (valid during the call only)
+		 * @return if the reading should go on
+		 */
+		boolean onShape(ShapeDefinition shape);
+
+		/**
+		 * @param name
+		 *            the name of a tag which is neither a shape nor a group
+		 */
+		void onUnknownTag(String name);
+	}
+
+	/**
+	 * @param dipToPixel
+	 *            the display density, used for the dp (and sp) values
+	 */
+	public ShapeXmlReader(final float dipToPixel) {
+		this(dipToPixel, dipToPixel);
+	}
+
+	/**
+	 * @param dipToPixel
+	 *            the display density, used for the dp values
+	 * @param spToPixel
+	 *            the display scaled density, used for the sp values
+	 */
+	public ShapeXmlReader(final float dipToPixel, final float spToPixel) {
+		mDipToPixel = dipToPixel;
+		mSpToPixel = spToPixel;
+		mShape = new ShapeDefinition();
+		mGroup = new GroupDefinition();
+	}
+
+	/**
+	 * Reads all the nodes from the parser's current position
+	 *
+	 * @param xpp
+	 *            the pull parser
+	 * @param handler
+	 *            the handler receiving the nodes
+	 * @return the number of shapes read
+	 */
+	public int read(final XmlPullParser xpp, final Handler handler)
+			throws XmlPullParserException, IOException {
+		String name;
+		ShapeType type;
+		int shapes = 0;
+
+		int event = xpp.getEventType();
+		while (event != XmlPullParser.END_DOCUMENT) {
+			switch (event) {
+			case XmlPullParser.START_TAG:
+				name = xpp.getName();
+				if (TAG_GROUP.equals(name)) {
+					readGroup(xpp, mGroup);
+					handler.onGroupStart(mGroup);
+					break;
+				} else if (TAG_SHAPES.equals(name)) {
+					break;
+				}
+
+				type = ShapeType.fromName(name);
+				if (type == null) {
+					handler.onUnknownTag(name);
+				} else {
+					readShape(xpp, type, mShape);
+					shapes++;
+					if (!handler.onShape(mShape)) {
+						return shapes;
+					}
+				}
+				break;
+			case XmlPullParser.END_TAG:
+				if (TAG_GROUP.equals(xpp.getName())) {
+					handler.onGroupEnd();
+				}
+				break;
+			}
+			event = xpp.next();
+		}
+
+		return shapes;
+	}
+
+	/**
+	 * Reads the attributes of a shape node
+	 *
+	 * @param xpp
+	 *            the pull parser
+	 * @param type
+	 *            the shape type
+	 * @param shape
+	 *            the definition to read into
+	 */
+	private void readShape(final XmlPullParser xpp, final ShapeType type,
+			final ShapeDefinition shape) {
+		shape.reset(type);
+
+		final int count = xpp.getAttributeCount();
+		String name, value;
+		for (int i = 0; i < count; ++i) {
+			name = xpp.getAttributeName(i);
+			value = xpp.getAttributeValue(i);
+			if ("x".equalsIgnoreCase(name)) {
+				shape.mX = getPixelSize(value);
+			} else if ("y".equalsIgnoreCase(name)) {
+				shape.mY = getPixelSize(value);
+			} else if ("z".equalsIgnoreCase(name)) {
+				shape.mZ = getPixelSize(value);
+			} else if ("width".equalsIgnoreCase(name)) {
+				shape.mWidth = getPixelSize(value);
+			} else if ("height".equalsIgnoreCase(name)) {
+				shape.mHeight = getPixelSize(value);
+			} else if ("thickness".equalsIgnoreCase(name)) {
+				shape.mThickness = getPixelSize(value);
+			} else if ("angle".equalsIgnoreCase(name)) {
+				shape.mAngle = Integer.parseInt(value);
+			} else if ("start".equalsIgnoreCase(name)) {
+				shape.mStart = Integer.parseInt(value);
+			} else if ("end".equalsIgnoreCase(name)) {
+				shape.mEnd = Integer.parseInt(value);
+			} else if ("id".equalsIgnoreCase(name)) {
+				shape.mId = value;
+			} else if ("base".equalsIgnoreCase(name)) {
+				shape.mBase = Colors.parseColor(value);
+				shape.mHasBase = true;
+			} else if ("accent".equalsIgnoreCase(name)) {
+				shape.mAccent = Colors.parseColor(value);
+				shape.mHasAccent = true;
+			} else if ("src".equalsIgnoreCase(name)) {
+				shape.mImage = value;
+			} else if ("d".equalsIgnoreCase(name)) {
+				shape.mPathData = value;
+			} else if ("label".equalsIgnoreCase(name)) {
+				shape.mLabel = value;
+			} else if ("labelSize".equalsIgnoreCase(name)) {
+				shape.mLabelSize = getPixelSize(value);
+				shape.mHasLabelSize = true;
+			} else if ("labelColor".equalsIgnoreCase(name)) {
+				shape.mLabelColor = Colors.parseColor(value);
+				shape.mHasLabelColor = true;
+			} else if ("labelStyle".equalsIgnoreCase(name)) {
+				shape.mLabelStyle = value;
+			}
+		}
+
+		if ((type == ShapeType.path) && (shape.mPathData != null)
+				&& ((shape.mWidth <= 0) || (shape.mHeight <= 0))) {
+			readPathSize(shape);
+		}
+	}
+
+	/**
+	 * Sizes a path shape missing its width or height from the path bounds :
+	 * the missing side keeps the path aspect ratio, and the path units are
+	 * read as dp when both are missing
+	 *
+	 * @param shape
+	 *            the path shape definition
+	 */
+	private void readPathSize(final ShapeDefinition shape) {
+		PathData data;
+		try {
+			data = PathData.obtain(shape.mPathData);
+		} catch (IllegalArgumentException e) {
+			// reported when the path is applied to the shape
+			return;
+		}
+
+		final float width = data.getWidth(), height = data.getHeight();
+		if ((width <= 0) || (height <= 0)) {
+			return;
+		}
+
+		if (shape.mWidth > 0) {
+			shape.mHeight = Math.round((shape.mWidth * height) / width);
+		} else if (shape.mHeight > 0) {
+			shape.mWidth = Math.round((shape.mHeight * width) / height);
+		} else {
+			shape.mWidth = Math.round(width * mDipToPixel);
+			shape.mHeight = Math.round(height * mDipToPixel);
+		}
+	}
+
+	/**
+	 * Reads the attributes of a group node
+	 *
+	 * @param xpp
+	 *            the pull parser
+	 * @param group
+	 *            the definition to read into
+	 */
+	private void readGroup(final XmlPullParser xpp, final GroupDefinition group) {
+		group.reset();
+
+		final int count = xpp.getAttributeCount();
+		String name, value;
+		for (int i = 0; i < count; ++i) {
+			name = xpp.getAttributeName(i);
+			value = xpp.getAttributeValue(i);
+			if ("x".equalsIgnoreCase(name)) {
+				group.mX = getPixelSize(value);
+			} else if ("y".equalsIgnoreCase(name)) {
+				group.mY = getPixelSize(value);
+			} else if ("angle".equalsIgnoreCase(name)) {
+				group.mAngle = Dimensions.parseFloat(value);
+			} else if ("scale".equalsIgnoreCase(name)) {
+				group.mScaleX = group.mScaleY = Dimensions.parseFloat(value);
+			} else if ("scaleX".equalsIgnoreCase(name)) {
+				group.mScaleX = Dimensions.parseFloat(value);
+			} else if ("scaleY".equalsIgnoreCase(name)) {
+				group.mScaleY = Dimensions.parseFloat(value);
+			} else if ("pivotX".equalsIgnoreCase(name)) {
+				group.mPivotX = getPixelSize(value);
+			} else if ("pivotY".equalsIgnoreCase(name)) {
+				group.mPivotY = getPixelSize(value);
+			} else if ("id".equalsIgnoreCase(name)) {
+				group.mId = value;
+			}
+		}
+	}
+
+	/**
+	 * @param value
+	 *            a value (dp, sp, px, ...)
+	 * @return the corresponding pixel value
+	 */
+	private int getPixelSize(final String value) {
+		return Dimensions.getPixelSize(value, mDipToPixel, mSpToPixel);
+	}
+
+	private static final String TAG_SHAPES = "shapes";
+	private static final String TAG_GROUP = "group";
+
+	final private float mDipToPixel;
+	final private float mSpToPixel;
+	final private ShapeDefinition mShape;
+	final private GroupDefinition mGroup;
+}
@@ -0,0 +1,177 @@
+package fr.xgouchet.shapebutton.metrics;
+
+/**
+ * A fixed size histogram with power of two buckets. All the storage is
+ * allocated on creation, so recording a value never allocates.
+ *
+ * Bucket i holds the values v so that 2^(i-1) <= v < 2^i (bucket 0 holds
+ * values lower than 1, the last bucket holds everything above).
+ */
+public class Histogram {
+
+	/** the default number of buckets (up to 2^39 ns, ie ~9 minutes) */
+	public static final int DEFAULT_BUCKETS = 40;
+
+	/**
+	 * @param name
+	 *            the name of the measured value
+	 */
+	public Histogram(final String name) {
+		this(name, DEFAULT_BUCKETS);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the measured value
+	 * @param buckets
+	 *            the number of buckets
+	 */
+	public Histogram(final String name, final int buckets) {
+		mName = name;
+		mBuckets = new long[buckets];
+		reset();
+	}
+
+	/**
+	 * @param value
+	 *            the value to record (negative values are counted as 0)
+	 */
+	public void record(final long value) {
+		final long v = Math.max(0, value);
+		int index = 64 - Long.numberOfLeadingZeros(v);
+		if (index >= mBuckets.length) {
+			index = mBuckets.length - 1;
+		}
+
+		mBuckets[index]++;
+		mCount++;
+		mSum += v;
+		if (v > mMax) {
+			mMax = v;
+		}
+		if (v < mMin) {
+			mMin = v;
+		}
+	}
+
+	/**
+	 * Clears all the recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < mBuckets.length; ++i) {
+			mBuckets[i] = 0;
+		}
+		mCount = mSum = mMax = 0;
+		mMin = Long.MAX_VALUE;
+	}
+
+	/**
+	 * @param percentile
+	 *            a percentile between 0 and 100
+	 * @return the upper bound of the bucket holding the given percentile
+	 */
+	public long getPercentile(final float percentile) {
+		if (mCount == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(mCount * (percentile / 100.0));
+		if (threshold < 1) {
+			threshold = 1;
+		}
+
+		long seen = 0;
+		for (int i = 0; i < mBuckets.length; ++i) {
+			seen += mBuckets[i];
+			if (seen >= threshold) {
+				return Math.min(getBucketUpperBound(i), mMax);
+			}
+		}
+
+		return mMax;
+	}
+
+	/**
+	 * @param index
+	 *            a bucket index
+	 * @return the (exclusive) upper bound of the values in that bucket
+	 */
+	public long getBucketUpperBound(final int index) {
+		if (index >= mBuckets.length - 1) {
+			return Long.MAX_VALUE;
+		}
+		return 1L << index;
+	}
+
+	/**
+	 * @param index
+	 *            a bucket index
+	 * @return the number of values recorded in that bucket
+	 */
+	public long getBucketCount(final int index) {
+		return mBuckets[index];
+	}
+
+	/**
+	 * @return the number of buckets
+	 */
+	public int getBucketsLength() {
+		return mBuckets.length;
+	}
+
+	/**
+	 * @return the name of the measured value
+	 */
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return the sum of the recorded values
+	 */
+	public long getSum() {
+		return mSum;
+	}
+
+	/**
+	 * @return the mean of the recorded values
+	 */
+	public double getMean() {
+		return (mCount == 0) ? 0 : ((double) mSum / mCount);
+	}
+
+	/**
+	 * @return the highest recorded value
+	 */
+	public long getMax() {
+		return mMax;
+	}
+
+	/**
+	 * @return the lowest recorded value
+	 */
+	public long getMin() {
+		return (mCount == 0) ? 0 : mMin;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return mName + " [count=" + mCount + ", mean=" + getMean() + ", p50="
+				+ getPercentile(50) + ", p90=" + getPercentile(90) + ", p99="
+				+ getPercentile(99) + ", max=" + mMax + "]";
+	}
+
+	final private String mName;
+	final private long[] mBuckets;
+
+	private long mCount, mSum, mMax, mMin;
+}
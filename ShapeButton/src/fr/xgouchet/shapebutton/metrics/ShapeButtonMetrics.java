@@ -0,0 +1,171 @@
+package fr.xgouchet.shapebutton.metrics;
+
+import fr.xgouchet.shapebutton.widget.ShapeButton;
+import fr.xgouchet.shapebutton.widget.ShapeButton.MetricsListener;
+
+/**
+ * A {@link MetricsListener} collecting the values reported by one or more
+ * {@link ShapeButton} in preallocated histograms. Times are in nanoseconds,
+ * areas in pixels.
+ *
+ * Like the views reporting to it, this class must only be used from the UI
+ * thread.
+ */
+public class ShapeButtonMetrics implements MetricsListener {
+
+	public ShapeButtonMetrics() {
+		mParseTime = new Histogram("parse time");
+		mParsedShapes = new Histogram("parsed shapes");
+		mMeasureTime = new Histogram("measure time");
+		mDrawTime = new Histogram("draw time");
+		mDrawnShapes = new Histogram("drawn shapes");
+		mCulledShapes = new Histogram("culled shapes");
+		mHitTestTime = new Histogram("hit test time");
+		mHitTestCandidates = new Histogram("hit test candidates");
+		mInvalidateArea = new Histogram("invalidate area");
+	}
+
+	/**
+	 * @see MetricsListener#onShapesParsed(ShapeButton, int, long)
+	 */
+	public void onShapesParsed(final ShapeButton view, final int shapes,
+			final long duration) {
+		mParseTime.record(duration);
+		mParsedShapes.record(shapes);
+	}
+
+	/**
+	 * @see MetricsListener#onMeasured(ShapeButton, int, long)
+	 */
+	public void onMeasured(final ShapeButton view, final int shapes,
+			final long duration) {
+		mMeasureTime.record(duration);
+	}
+
+	/**
+	 * @see MetricsListener#onFrameDrawn(ShapeButton, int, int, long)
+	 */
+	public void onFrameDrawn(final ShapeButton view, final int drawn,
+			final int culled, final long duration) {
+		mDrawTime.record(duration);
+		mDrawnShapes.record(drawn);
+		mCulledShapes.record(culled);
+	}
+
+	/**
+	 * @see MetricsListener#onHitTest(ShapeButton, int, long)
+	 */
+	public void onHitTest(final ShapeButton view, final int candidates,
+			final long duration) {
+		mHitTestTime.record(duration);
+		mHitTestCandidates.record(candidates);
+	}
+
+	/**
+	 * @see MetricsListener#onInvalidate(ShapeButton, int)
+	 */
+	public void onInvalidate(final ShapeButton view, final int area) {
+		mInvalidateArea.record(area);
+	}
+
+	/**
+	 * Clears all the collected values
+	 */
+	public void reset() {
+		mParseTime.reset();
+		mParsedShapes.reset();
+		mMeasureTime.reset();
+		mDrawTime.reset();
+		mDrawnShapes.reset();
+		mCulledShapes.reset();
+		mHitTestTime.reset();
+		mHitTestCandidates.reset();
+		mInvalidateArea.reset();
+	}
+
+	/**
+	 * @return the xml parsing time histogram
+	 */
+	public Histogram getParseTime() {
+		return mParseTime;
+	}
+
+	/**
+	 * @return the parsed shapes count histogram
+	 */
+	public Histogram getParsedShapes() {
+		return mParsedShapes;
+	}
+
+	/**
+	 * @return the measure time histogram
+	 */
+	public Histogram getMeasureTime() {
+		return mMeasureTime;
+	}
+
+	/**
+	 * @return the per frame draw time histogram
+	 */
+	public Histogram getDrawTime() {
+		return mDrawTime;
+	}
+
+	/**
+	 * @return the per frame drawn shapes histogram
+	 */
+	public Histogram getDrawnShapes() {
+		return mDrawnShapes;
+	}
+
+	/**
+	 * @return the per frame culled shapes histogram
+	 */
+	public Histogram getCulledShapes() {
+		return mCulledShapes;
+	}
+
+	/**
+	 * @return the hit test latency histogram
+	 */
+	public Histogram getHitTestTime() {
+		return mHitTestTime;
+	}
+
+	/**
+	 * @return the hit test candidates histogram
+	 */
+	public Histogram getHitTestCandidates() {
+		return mHitTestCandidates;
+	}
+
+	/**
+	 * @return the invalidated area histogram
+	 */
+	public Histogram getInvalidateArea() {
+		return mInvalidateArea;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(mParseTime).append('\n');
+		builder.append(mParsedShapes).append('\n');
+		builder.append(mMeasureTime).append('\n');
+		builder.append(mDrawTime).append('\n');
+		builder.append(mDrawnShapes).append('\n');
+		builder.append(mCulledShapes).append('\n');
+		builder.append(mHitTestTime).append('\n');
+		builder.append(mHitTestCandidates).append('\n');
+		builder.append(mInvalidateArea);
+		return builder.toString();
+	}
+
+	final private Histogram mParseTime, mParsedShapes;
+	final private Histogram mMeasureTime;
+	final private Histogram mDrawTime, mDrawnShapes, mCulledShapes;
+	final private Histogram mHitTestTime, mHitTestCandidates;
+	final private Histogram mInvalidateArea;
+}
@@ -0,0 +1,163 @@
+package fr.xgouchet.shapebutton.widget;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+/**
+ * The measured layout of a shape label : the text, the paint to draw it with,
+ * its width and the offset to center it vertically. Layouts are cached per
+ * (text, size, typeface) and shared by all the shapes using the same label,
+ * so drawing a label never measures text.
+ */
+final class LabelLayout {
+
+	/** the maximum number of cached layouts */
+	public static final int MAX_CACHE_SIZE = 512;
+
+	/**
+	 * @param text
+	 *            the label text
+	 * @param size
+	 *            the text size (in pixels)
+	 * @param typeface
+	 *            the typeface (or null for the default one)
+	 * @return the (shared) layout for the given label
+	 */
+	public static synchronized LabelLayout obtain(final String text,
+			final float size, final Typeface typeface) {
+		// looked up with a reused key, only the cached entries get their own
+		LOOKUP.set(text, size, typeface);
+
+		LabelLayout layout = CACHE.get(LOOKUP);
+		if (layout == null) {
+			layout = new LabelLayout(text, size, typeface);
+			CACHE.put(new Key(text, size, typeface), layout);
+		}
+		LOOKUP.set(null, 0, null);
+
+		return layout;
+	}
+
+	/**
+	 * Draws the label centered on the given point
+	 * 
+	 * @param canvas
+	 * @param x
+	 * @param y
+	 * @param color
+	 *            the text color (including alpha)
+	 */
+	public void draw(final Canvas canvas, final float x,
+			final float y, final int color) {
+		mPaint.setColor(color);
+		canvas.drawText(mText, x - mHalfWidth, y + mBaselineOffset, mPaint);
+	}
+
+	/**
+	 * @return the label text
+	 */
+	public String getText() {
+		return mText;
+	}
+
+	/**
+	 * @return the measured width of the text
+	 */
+	public float getWidth() {
+		return mHalfWidth * 2;
+	}
+
+	/**
+	 * @return the height of the text (from the ascent to the descent)
+	 */
+	public float getHeight() {
+		return mHalfHeight * 2;
+	}
+
+	/**
+	 * @param text
+	 * @param size
+	 * @param typeface
+	 */
+	private LabelLayout(final String text, final float size,
+			final Typeface typeface) {
+		mText = text;
+		mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+		mPaint.setTextSize(size);
+		mPaint.setTypeface(typeface);
+		mPaint.setTextAlign(Paint.Align.LEFT);
+
+		Paint.FontMetrics metrics = new Paint.FontMetrics();
+		mPaint.getFontMetrics(metrics);
+		mHalfWidth = mPaint.measureText(text) / 2.0f;
+		mHalfHeight = (metrics.descent - metrics.ascent) / 2.0f;
+		mBaselineOffset = -(metrics.ascent + metrics.descent) / 2.0f;
+	}
+
+	/**
+	 * The cache key
+	 */
+	private static final class Key {
+
+		Key(final String text, final float size, final Typeface typeface) {
+			set(text, size, typeface);
+		}
+
+		void set(final String text, final float size, final Typeface typeface) {
+			mText = text;
+			mSize = size;
+			mTypeface = typeface;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return mText.equals(other.mText) && (mSize == other.mSize)
+					&& (mTypeface == other.mTypeface);
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode() {
+			int hash = mText.hashCode();
+			hash = (31 * hash) + Float.floatToIntBits(mSize);
+			hash = (31 * hash)
+					+ ((mTypeface == null) ? 0 : mTypeface.hashCode());
+			return hash;
+		}
+
+		private String mText;
+		private float mSize;
+		private Typeface mTypeface;
+	}
+
+	/** the key used to look the cache up (guarded by the class lock) */
+	private static final Key LOOKUP = new Key(null, 0, null);
+
+	/** LRU cache of the layouts */
+	private static final Map<Key, LabelLayout> CACHE = new LinkedHashMap<Key, LabelLayout>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(
+				final Map.Entry<Key, LabelLayout> eldest) {
+			return size() > MAX_CACHE_SIZE;
+		}
+	};
+
+	final private String mText;
+	final private TextPaint mPaint;
+	final private float mHalfWidth, mHalfHeight, mBaselineOffset;
+}
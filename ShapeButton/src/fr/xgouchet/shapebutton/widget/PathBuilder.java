@@ -0,0 +1,61 @@
+package fr.xgouchet.shapebutton.widget;
+
+import android.graphics.Path;
+import fr.xgouchet.shapebutton.geometry.PathData;
+
+/**
+ * Replays a (shared) {@link PathData} into an Android {@link Path}, scaled to
+ * the size of a shape.
+ */
+final class PathBuilder implements PathData.PathSink {
+
+	/**
+	 * @param path
+	 *            the path to build into
+	 */
+	public PathBuilder(final Path path) {
+		mPath = path;
+	}
+
+	/**
+	 * Replaces the path content with the given path data
+	 *
+	 * @param data
+	 *            the path data (or null to empty the path)
+	 * @param width
+	 *            the shape width
+	 * @param height
+	 *            the shape height
+	 */
+	public void build(final PathData data, final float width,
+			final float height) {
+		mPath.reset();
+		if (data != null) {
+			data.replay(this, width, height);
+		}
+	}
+
+	public void moveTo(final float x, final float y) {
+		mPath.moveTo(x, y);
+	}
+
+	public void lineTo(final float x, final float y) {
+		mPath.lineTo(x, y);
+	}
+
+	public void quadTo(final float x1, final float y1, final float x2,
+			final float y2) {
+		mPath.quadTo(x1, y1, x2, y2);
+	}
+
+	public void cubicTo(final float x1, final float y1, final float x2,
+			final float y2, final float x3, final float y3) {
+		mPath.cubicTo(x1, y1, x2, y2, x3, y3);
+	}
+
+	public void close() {
+		mPath.close();
+	}
+
+	final private Path mPath;
+}
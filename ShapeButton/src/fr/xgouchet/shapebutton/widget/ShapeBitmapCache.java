@@ -0,0 +1,416 @@
+package fr.xgouchet.shapebutton.widget;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * A memory cache of the bitmaps used to fill shapes, shared by all the
+ * {@link ShapeButton}.
+ *
+ * Bitmaps are decoded on a background thread, downsampled (with
+ * inSampleSize) to the size they are displayed at, and kept in a LRU cache
+ * bounded in bytes. Bitmaps are reference counted : an evicted bitmap which
+ * is not used by any shape anymore is kept to be reused as inBitmap by the
+ * next decodes (API 11+).
+ */
+final class ShapeBitmapCache {
+
+	/**
+	 * Callback invoked on the UI thread when a bitmap is available
+	 */
+	public interface Callback {
+		/**
+		 * @param resId
+		 *            the requested resource
+		 * @param request
+		 *            the request id given to
+		 *            {@link ShapeBitmapCache#load(Resources, int, int, int, Callback, int)}
+		 * @param bitmap
+		 *            the bitmap (or null if it could not be decoded). The
+		 *            receiver owns a reference and must give it back with
+		 *            {@link ShapeBitmapCache#release(Bitmap)}
+		 */
+		void onBitmapLoaded(int resId, int request, Bitmap bitmap);
+	}
+
+	/**
+	 * @return the shared cache instance
+	 */
+	public static synchronized ShapeBitmapCache getInstance() {
+		if (sInstance == null) {
+			sInstance = new ShapeBitmapCache(Runtime.getRuntime().maxMemory()
+					/ MEMORY_FRACTION);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Requests the given drawable resource, decoded to (at least) the given
+	 * size. If the bitmap is in memory, the callback is invoked immediately,
+	 * else it is invoked on the UI thread once the bitmap has been decoded.
+	 *
+	 * @param res
+	 *            the resources to decode from
+	 * @param resId
+	 *            the drawable resource id
+	 * @param reqWidth
+	 *            the displayed width (in pixels)
+	 * @param reqHeight
+	 *            the displayed height (in pixels)
+	 * @param callback
+	 *            the callback receiving the bitmap
+	 * @param request
+	 *            an id handed back to the callback, so that a receiver can
+	 *            reuse the same callback for all its requests
+	 */
+	public void load(final Resources res, final int resId, final int reqWidth,
+			final int reqHeight, final Callback callback, final int request) {
+
+		Bitmap bitmap = null;
+		synchronized (this) {
+			int[] size = mSourceSizes.get(resId);
+			if (size != null) {
+				mLookup.set(resId, getSampleSize(size, reqWidth, reqHeight));
+				bitmap = acquire(mLookup);
+			}
+		}
+
+		if (bitmap != null) {
+			callback.onBitmapLoaded(resId, request, bitmap);
+			return;
+		}
+
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				final Bitmap decoded = decode(res, resId, reqWidth, reqHeight);
+				mMainHandler.post(new Runnable() {
+					public void run() {
+						callback.onBitmapLoaded(resId, request, decoded);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Gives back a reference obtained through a {@link Callback}
+	 *
+	 * @param bitmap
+	 */
+	public synchronized void release(final Bitmap bitmap) {
+		if (bitmap == null) {
+			return;
+		}
+
+		Entry entry = mEntries.get(bitmap);
+		if (entry == null) {
+			return;
+		}
+
+		entry.mRefs--;
+		if ((entry.mRefs <= 0) && entry.mEvicted) {
+			// evicted while drawn, nobody holds it anymore
+			discard(entry);
+		}
+	}
+
+	/**
+	 * Empties the cache (the bitmaps still used by shapes are kept until they
+	 * are released)
+	 */
+	public synchronized void clear() {
+		trimToSize(0);
+		mReusable.clear();
+	}
+
+	/**
+	 * Decodes a bitmap (on the background thread) unless another request
+	 * already did
+	 */
+	private Bitmap decode(final Resources res, final int resId,
+			final int reqWidth, final int reqHeight) {
+		int[] size;
+		synchronized (this) {
+			size = mSourceSizes.get(resId);
+		}
+
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		if (size == null) {
+			options.inJustDecodeBounds = true;
+			BitmapFactory.decodeResource(res, resId, options);
+			size = new int[] { options.outWidth, options.outHeight };
+			synchronized (this) {
+				mSourceSizes.put(resId, size);
+			}
+		}
+
+		int sampleSize = getSampleSize(size, reqWidth, reqHeight);
+		synchronized (this) {
+			mLookup.set(resId, sampleSize);
+			Bitmap cached = acquire(mLookup);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		options.inJustDecodeBounds = false;
+		options.inSampleSize = sampleSize;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			options.inMutable = true;
+			synchronized (this) {
+				options.inBitmap = takeReusable(size, sampleSize);
+			}
+		}
+
+		Bitmap bitmap;
+		try {
+			try {
+				bitmap = BitmapFactory.decodeResource(res, resId, options);
+			} catch (IllegalArgumentException e) {
+				// the reused bitmap did not fit after all
+				options.inBitmap = null;
+				bitmap = BitmapFactory.decodeResource(res, resId, options);
+			}
+		} catch (OutOfMemoryError e) {
+			Log.w(TAG, "Not enough memory to decode shape image", e);
+			bitmap = null;
+		}
+
+		if (bitmap == null) {
+			return null;
+		}
+
+		synchronized (this) {
+			Entry entry = new Entry(bitmap);
+			entry.mRefs = 1;
+			mCache.put(new Key(resId, sampleSize), entry);
+			mEntries.put(bitmap, entry);
+			mSize += getByteCount(bitmap);
+			trimToSize(mMaxSize);
+		}
+
+		return bitmap;
+	}
+
+	/**
+	 * @param key
+	 * @return the cached bitmap (with one more reference) or null
+	 */
+	private Bitmap acquire(final Key key) {
+		Entry entry = mCache.get(key);
+		if (entry == null) {
+			return null;
+		}
+		entry.mRefs++;
+		return entry.mBitmap;
+	}
+
+	/**
+	 * Evicts the least recently used bitmaps until the cache fits in the
+	 * given size
+	 */
+	private void trimToSize(final long maxSize) {
+		Iterator<Entry> it = mCache.values().iterator();
+		while ((mSize > maxSize) && it.hasNext()) {
+			Entry entry = it.next();
+			it.remove();
+			mSize -= getByteCount(entry.mBitmap);
+
+			if (entry.mRefs <= 0) {
+				discard(entry);
+			} else {
+				// still drawn, discarded by the last release
+				entry.mEvicted = true;
+			}
+		}
+	}
+
+	/**
+	 * Forgets an evicted entry nobody uses anymore, keeping its bitmap to be
+	 * reused
+	 */
+	private void discard(final Entry entry) {
+		mEntries.remove(entry.mBitmap);
+		addReusable(entry.mBitmap);
+	}
+
+	/**
+	 * Keeps a bitmap nobody uses anymore, to decode into it later
+	 */
+	private void addReusable(final Bitmap bitmap) {
+		if ((Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB)
+				|| !bitmap.isMutable()) {
+			return;
+		}
+
+		if (mReusable.size() >= MAX_REUSABLE) {
+			mReusable.remove(0);
+		}
+		mReusable.add(bitmap);
+	}
+
+	/**
+	 * @return a bitmap which can be used as inBitmap to decode the given
+	 *         source at the given sample size, or null
+	 */
+	private Bitmap takeReusable(final int[] size, final int sampleSize) {
+		int width = (size[0] + sampleSize - 1) / sampleSize;
+		int height = (size[1] + sampleSize - 1) / sampleSize;
+
+		int count = mReusable.size();
+		for (int i = 0; i < count; ++i) {
+			Bitmap candidate = mReusable.get(i);
+			boolean fits;
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+				fits = candidate.getAllocationByteCount() >= (width * height * 4);
+			} else {
+				// before KitKat, only same size bitmaps without sampling
+				fits = (sampleSize == 1) && (candidate.getWidth() == width)
+						&& (candidate.getHeight() == height);
+			}
+
+			if (fits) {
+				mReusable.remove(i);
+				return candidate;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the largest power of two sample size keeping the decoded bitmap
+	 *         at least as large as requested
+	 */
+	private static int getSampleSize(final int[] size, final int reqWidth,
+			final int reqHeight) {
+		int sampleSize = 1;
+		if ((reqWidth <= 0) || (reqHeight <= 0)) {
+			return sampleSize;
+		}
+
+		while (((size[0] / (sampleSize * 2)) >= reqWidth)
+				&& ((size[1] / (sampleSize * 2)) >= reqHeight)) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+
+	/**
+	 * @return the size of the bitmap in memory
+	 */
+	private static int getByteCount(final Bitmap bitmap) {
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	/**
+	 * The cache key for a resource decoded at a sample size (mutable, so the
+	 * cache hits can be looked up without boxing a key)
+	 */
+	private static final class Key {
+
+		Key(final int resId, final int sampleSize) {
+			set(resId, sampleSize);
+		}
+
+		void set(final int resId, final int sampleSize) {
+			mResId = resId;
+			mSampleSize = sampleSize;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return (mResId == other.mResId)
+					&& (mSampleSize == other.mSampleSize);
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode() {
+			return (31 * mResId) + mSampleSize;
+		}
+
+		private int mResId;
+		private int mSampleSize;
+	}
+
+	/**
+	 * A cached bitmap and its reference count
+	 */
+	private static final class Entry {
+
+		Entry(final Bitmap bitmap) {
+			mBitmap = bitmap;
+		}
+
+		final Bitmap mBitmap;
+		int mRefs;
+		boolean mEvicted;
+	}
+
+	/**
+	 * @param maxSize
+	 *            the maximum size of the cache (in bytes)
+	 */
+	private ShapeBitmapCache(final long maxSize) {
+		mMaxSize = maxSize;
+		mCache = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		mLookup = new Key(0, 0);
+		mEntries = new IdentityHashMap<Bitmap, Entry>();
+		mSourceSizes = new SparseArray<int[]>();
+		mReusable = new ArrayList<Bitmap>();
+		mMainHandler = new Handler(Looper.getMainLooper());
+		mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ShapeBitmapCache");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	private static final String TAG = "SB";
+
+	/** the cache uses (at most) 1/8th of the application memory */
+	private static final int MEMORY_FRACTION = 8;
+	private static final int MAX_REUSABLE = 8;
+
+	private static ShapeBitmapCache sInstance;
+
+	final private long mMaxSize;
+	final private Map<Key, Entry> mCache;
+	/** the key used to look the cache up (guarded by the cache lock) */
+	final private Key mLookup;
+	final private Map<Bitmap, Entry> mEntries;
+	final private SparseArray<int[]> mSourceSizes;
+	final private List<Bitmap> mReusable;
+	final private Handler mMainHandler;
+	final private ExecutorService mExecutor;
+
+	private long mSize;
+}
@@ -1,8 +1,11 @@
 package fr.xgouchet.shapebutton.widget;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.xmlpull.v1.XmlPullParser;
@@ -10,22 +13,40 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.EmbossMaskFilter;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Path.FillType;
 import android.graphics.Point;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.text.TextUtils;
+import android.graphics.Shader;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Trace;
 import android.util.AttributeSet;
 import android.util.FloatMath;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 import fr.xgouchet.shapebutton.R;
+import fr.xgouchet.shapebutton.geometry.GroupDefinition;
+import fr.xgouchet.shapebutton.geometry.PathData;
+import fr.xgouchet.shapebutton.geometry.ShapeDefinition;
+import fr.xgouchet.shapebutton.geometry.ShapeGeometry;
+import fr.xgouchet.shapebutton.geometry.ShapeGrid;
+import fr.xgouchet.shapebutton.geometry.ShapeType;
+import fr.xgouchet.shapebutton.geometry.ShapeXmlReader;
 
 public class ShapeButton extends View {
 
@@ -44,27 +65,154 @@ public class ShapeButton extends View {
 		void onClick(View v, String id);
 	}
 
-	public enum ShapeType {
-		rect, oval, triangle, arc
+	/**
+	 * Interface definition for a callback to be invoked when shapes loaded
+	 * in the background are all read.
+	 */
+	public interface OnShapesLoadedListener {
+		/**
+		 * Called on the UI thread once all the shapes have been added
+		 * 
+		 * @param view
+		 *            the view the shapes were loaded into
+		 * @param shapes
+		 *            the number of shapes read
+		 */
+		void onShapesLoaded(ShapeButton view, int shapes);
+
+		/**
+		 * Called on the UI thread if the shapes could not be read (the shapes
+		 * read before the error are kept)
+		 * 
+		 * @param view
+		 *            the view the shapes were loaded into
+		 * @param error
+		 *            the error
+		 */
+		void onShapesLoadFailed(ShapeButton view, Exception error);
+	}
+
+	/**
+	 * Receives the groups and shapes read from a shapes xml, in document
+	 * order (a group is always received before its shapes)
+	 */
+	interface ShapeConsumer {
+		/**
+		 * @param group
+		 *            a group read (not attached to any button yet)
+		 */
+		void onGroup(ShapeGroup group);
+
+		/**
+		 * @param shape
+		 *            a shape read
+		 * @return if the reading should go on
+		 */
+		boolean onShape(ShapeElement shape);
+	}
+
+	/**
+	 * Interface definition for a callback to be invoked with performance
+	 * measurements of a {@link ShapeButton}. All methods are called on the UI
+	 * thread, durations are in nanoseconds.
+	 */
+	public interface MetricsListener {
+		/**
+		 * Called when a shapes xml has been read
+		 * 
+		 * @param view
+		 *            the view reporting
+		 * @param shapes
+		 *            the number of shapes read
+		 * @param duration
+		 *            the time spent reading the xml
+		 */
+		void onShapesParsed(ShapeButton view, int shapes, long duration);
+
+		/**
+		 * Called when the view has been measured
+		 * 
+		 * @param view
+		 *            the view reporting
+		 * @param shapes
+		 *            the number of shapes measured
+		 * @param duration
+		 *            the time spent measuring
+		 */
+		void onMeasured(ShapeButton view, int shapes, long duration);
+
+		/**
+		 * Called after each frame drawn
+		 * 
+		 * @param view
+		 *            the view reporting
+		 * @param drawn
+		 *            the number of shapes drawn
+		 * @param culled
+		 *            the number of shapes skipped as outside of the clip
+		 * @param duration
+		 *            the time spent drawing
+		 */
+		void onFrameDrawn(ShapeButton view, int drawn, int culled,
+				long duration);
+
+		/**
+		 * Called after each touch hit test
+		 * 
+		 * @param view
+		 *            the view reporting
+		 * @param candidates
+		 *            the number of shapes tested
+		 * @param duration
+		 *            the time spent testing
+		 */
+		void onHitTest(ShapeButton view, int candidates, long duration);
+
+		/**
+		 * Called when the view invalidates (part of) itself
+		 * 
+		 * @param view
+		 *            the view reporting
+		 * @param area
+		 *            the invalidated area (in pixels)
+		 */
+		void onInvalidate(ShapeButton view, int area);
 	}
 
 	/**
 	 * Defines the shape to be used in a {@link ShapeButton}, as well as its
 	 * fundamental properties (color, ...)
+	 * 
+	 * Elements are not bound to a button : the ones created through
+	 * {@link ShapeButton#createShape(ShapeType)} come from a shared pool, and
+	 * go back to it on {@link ShapeButton#reset()}.
 	 */
-	public class ShapeElement implements Comparable<ShapeElement> {
+	public static class ShapeElement implements Comparable<ShapeElement> {
 
-		public static final float DEG_TO_RAD = (float) (Math.PI / 180.0);
+		public static final float DEG_TO_RAD = ShapeGeometry.DEG_TO_RAD;
 
 		/**
+		 * @param shapeType
+		 *            the type of shape
+		 * @param dipToPixel
+		 *            the display density
 		 */
-		public ShapeElement(final ShapeType shapeType) {
+		public ShapeElement(final ShapeType shapeType, final float dipToPixel) {
 			// members
 			mShape = shapeType;
+			mDipToPixel = dipToPixel;
+			mGeometry = new ShapeGeometry(shapeType);
 			mRect = new Rect();
 			mRectF = new RectF();
+			mInnerRectF = new RectF();
+			mBounds = new float[4];
+			mImageCallback = new ShapeBitmapCache.Callback() {
+				public void onBitmapLoaded(int resId, int request, Bitmap bitmap) {
+					onImageLoaded(request, bitmap);
+				}
+			};
 			mPath = new Path();
-			mPosition = new Point();
+			mPathBuilder = new PathBuilder(mPath);
 			mEnabled = true;
 
 			updatePath();
@@ -74,18 +222,67 @@ public class ShapeButton extends View {
 			mPaint = new Paint();
 			mPaint.setAntiAlias(true);
 			mPaint.setStyle(Paint.Style.FILL);
-			mPaint.setMaskFilter(new EmbossMaskFilter(new float[] { 1, 1, 1 },
-					0.8f, 3.0f, 1 * mDipToPixel));
+			mPaint.setMaskFilter(ShapeElementPool.getEmbossFilter(mDipToPixel));
+
+			mBase = DEFAULT_BASE;
+			mAccent = DEFAULT_ACCENT;
+			mLabelColor = DEFAULT_LABEL_COLOR;
+			mLabelSize = DEFAULT_LABEL_SIZE_DP * mDipToPixel;
+		}
+
+		/**
+		 * Resets this element to its initial state, so that it can be reused
+		 * for a new definition
+		 */
+		void clear() {
+			mId = null;
+			mBase = DEFAULT_BASE;
+			mAccent = DEFAULT_ACCENT;
+			mAccentFilter = null;
+			mPressed = false;
+			mEnabled = true;
+
+			mLabel = null;
+			mLabelLayout = null;
+			mLabelColor = DEFAULT_LABEL_COLOR;
+			mLabelSize = DEFAULT_LABEL_SIZE_DP * mDipToPixel;
+			mLabelTypeface = null;
+
+			mOwner = null;
+			mGroup = null;
+			mImageRes = 0;
+			mImageGeneration++;
+			releaseImage();
+
+			mGeometry.setPosition(0, 0);
+			mGeometry.setZOrder(0);
+			mGeometry.setAngle(0);
+			mGeometry.setRange(0, 0);
+			mGeometry.setThickness(0);
+			mGeometry.setPathData(null);
+			setSize(0, 0);
+		}
 
-			mBase = Color.argb(255, 214, 214, 214);
-			mAccent = Color.argb(255, 51, 173, 214);
+		/**
+		 * @param dipToPixel
+		 *            the display density
+		 */
+		void setDipToPixel(final float dipToPixel) {
+			if (mDipToPixel != dipToPixel) {
+				mDipToPixel = dipToPixel;
+				mPaint.setMaskFilter(ShapeElementPool
+						.getEmbossFilter(dipToPixel));
+				if (mLabel == null) {
+					mLabelSize = DEFAULT_LABEL_SIZE_DP * mDipToPixel;
+				}
+			}
 		}
 
 		/**
 		 * @see java.lang.Comparable#compareTo(java.lang.Object)
 		 */
 		public int compareTo(ShapeElement another) {
-			return mZOrder - another.mZOrder;
+			return mGeometry.compareTo(another.mGeometry);
 		}
 
 		/**
@@ -97,7 +294,13 @@ public class ShapeButton extends View {
 		public void onDraw(final Canvas canvas) {
 
 			// set paint color
-			if (!isEnabled()) {
+			if (mShader != null) {
+				mPaint.setColor(Color.WHITE);
+				if (!isEnabled()) {
+					mPaint.setAlpha(128);
+				}
+				mPaint.setColorFilter(isPressed() ? getAccentFilter() : null);
+			} else if (!isEnabled()) {
 				mPaint.setColor(mBase);
 				mPaint.setAlpha(128);
 			} else if (isPressed()) {
@@ -108,9 +311,18 @@ public class ShapeButton extends View {
 
 			// actually draw
 			canvas.save();
-			canvas.translate(mPosition.x, mPosition.y);
-			canvas.rotate(mAngle, mRect.width() / 2, mRect.height() / 2);
+			canvas.translate(mGeometry.getX(), mGeometry.getY());
+			canvas.rotate(mGeometry.getAngle(), mRect.width() / 2,
+					mRect.height() / 2);
 			drawShape(canvas);
+			if (mLabelLayout != null) {
+				int color = mLabelColor;
+				if (!isEnabled()) {
+					color = (color & 0x00FFFFFF)
+							| ((Color.alpha(color) / 2) << 24);
+				}
+				mLabelLayout.draw(canvas, mLabelX, mLabelY, color);
+			}
 			canvas.restore();
 		}
 
@@ -127,6 +339,7 @@ public class ShapeButton extends View {
 				break;
 			case triangle:
 			case arc:
+			case path:
 				canvas.drawPath(mPath, mPaint);
 				break;
 			}
@@ -134,6 +347,9 @@ public class ShapeButton extends View {
 		}
 
 		private void updatePath() {
+			final int start = mGeometry.getStart();
+			final int end = mGeometry.getEnd();
+			final int thickness = mGeometry.getThickness();
 			float hw, hh;
 			hw = (mRectF.width() / 2.0f);
 			hh = (mRectF.height() / 2.0f);
@@ -148,55 +364,239 @@ public class ShapeButton extends View {
 				break;
 			case arc:
 				mPath.reset();
-				if (mThickness > 0) {
-					mPath.addArc(mRectF, mStart, (mEnd - mStart));
-					mPath.lineTo(hw + FloatMath.cos(mEnd * DEG_TO_RAD)
-							* (hw - mThickness),
-							hh + FloatMath.sin(mEnd * DEG_TO_RAD)
-									* (hh - mThickness));
-					RectF inside = new RectF(mThickness, mThickness,
-							mRectF.width() - mThickness, mRectF.height()
-									- mThickness);
-					mPath.addArc(inside, mEnd, (mStart - mEnd));
-					mPath.lineTo(hw + FloatMath.cos(mStart * DEG_TO_RAD) * hw,
-							hh + FloatMath.sin(mStart * DEG_TO_RAD) * hh);
+				if (thickness > 0) {
+					mPath.addArc(mRectF, start, (end - start));
+					mPath.lineTo(hw + FloatMath.cos(end * DEG_TO_RAD)
+							* (hw - thickness),
+							hh + FloatMath.sin(end * DEG_TO_RAD)
+									* (hh - thickness));
+					mInnerRectF.set(thickness, thickness, mRectF.width()
+							- thickness, mRectF.height() - thickness);
+					mPath.addArc(mInnerRectF, end, (start - end));
+					mPath.lineTo(hw + FloatMath.cos(start * DEG_TO_RAD) * hw,
+							hh + FloatMath.sin(start * DEG_TO_RAD) * hh);
 
 				} else {
-					mPath.addArc(mRectF, mStart, mEnd - mStart);
+					mPath.addArc(mRectF, start, end - start);
 					mPath.lineTo(hw, hh);
 					mPath.close();
 				}
+				break;
+			case path:
+				// scales the shared path data, the string is not parsed again
+				mPathBuilder.build(mGeometry.getPathData(), mRectF.width(),
+						mRectF.height());
+				break;
+			default:
+				break;
+			}
+
+			updateLabelPosition(hw, hh);
+		}
 
+		/**
+		 * Computes where the label is centered, in the shape coordinates
+		 * 
+		 * @param hw
+		 *            the half width of the shape
+		 * @param hh
+		 *            the half height of the shape
+		 */
+		private void updateLabelPosition(final float hw, final float hh) {
+			switch (mShape) {
+			case triangle:
+				// centroid
+				mLabelX = hw;
+				mLabelY = (hh * 4.0f) / 3.0f;
+				break;
+			case arc:
+				// middle of the arc range, halfway through the thickness
+				final int thickness = mGeometry.getThickness();
+				final float angle = ((mGeometry.getStart() + mGeometry
+						.getEnd()) / 2.0f) * DEG_TO_RAD;
+				float rx, ry;
+				if (thickness > 0) {
+					rx = hw - (thickness / 2.0f);
+					ry = hh - (thickness / 2.0f);
+				} else {
+					rx = hw / 2.0f;
+					ry = hh / 2.0f;
+				}
+				mLabelX = hw + (FloatMath.cos(angle) * rx);
+				mLabelY = hh + (FloatMath.sin(angle) * ry);
+				break;
 			default:
+				mLabelX = hw;
+				mLabelY = hh;
 				break;
 			}
 		}
 
 		/**
-		 * @return the needed width
+		 * @return the filter tinting the image with the accent color
 		 */
-		public int getNeededWidth() {
-			float halfwidth = (mRect.width() / 2);
+		private ColorFilter getAccentFilter() {
+			if (mAccentFilter == null) {
+				mAccentFilter = new PorterDuffColorFilter(mAccent,
+						PorterDuff.Mode.MULTIPLY);
+			}
+			return mAccentFilter;
+		}
+
+		/**
+		 * Called when the shape is added to a button
+		 * 
+		 * @param owner
+		 *            the button holding the shape
+		 */
+		private void attach(final ShapeButton owner) {
+			mOwner = owner;
+			requestImage();
+		}
+
+		/**
+		 * Requests the image bitmap at the current shape size, if it can be
+		 * displayed
+		 */
+		private void requestImage() {
+			mImageGeneration++;
+			if ((mOwner == null) || !mOwner.mAttached || (mImageRes == 0)
+					|| (mRect.width() <= 0) || (mRect.height() <= 0)) {
+				return;
+			}
+
+			ShapeBitmapCache.getInstance().load(mOwner.getResources(),
+					mImageRes, mRect.width(), mRect.height(), mImageCallback,
+					mImageGeneration);
+		}
+
+		/**
+		 * @param generation
+		 *            the request generation
+		 * @param bitmap
+		 *            the loaded bitmap
+		 */
+		private void onImageLoaded(final int generation, final Bitmap bitmap) {
+			if ((generation != mImageGeneration) || (bitmap == null)) {
+				// outdated request (the image or size changed since)
+				ShapeBitmapCache.getInstance().release(bitmap);
+				return;
+			}
+
+			releaseImage();
+			mBitmap = bitmap;
+			mShader = new BitmapShader(bitmap, Shader.TileMode.CLAMP,
+					Shader.TileMode.CLAMP);
+			updateShaderMatrix();
+			mPaint.setShader(mShader);
+
+			invalidateSelf();
+		}
+
+		/**
+		 * Scales the image to cover the shape's rect (center crop)
+		 */
+		private void updateShaderMatrix() {
+			if (mShader == null) {
+				return;
+			}
+
+			float scale, bw, bh;
+			bw = mBitmap.getWidth();
+			bh = mBitmap.getHeight();
+			scale = Math.max(mRectF.width() / bw, mRectF.height() / bh);
+
+			if (mShaderMatrix == null) {
+				mShaderMatrix = new Matrix();
+			}
+			mShaderMatrix.setScale(scale, scale);
+			mShaderMatrix.postTranslate((mRectF.width() - (bw * scale)) / 2,
+					(mRectF.height() - (bh * scale)) / 2);
+			mShader.setLocalMatrix(mShaderMatrix);
+		}
+
+		/**
+		 * Gives the image back to the cache when the button leaves the window
+		 * (a pending request is dropped too), it is requested again once
+		 * attached
+		 */
+		private void detachImage() {
+			mImageGeneration++;
+			releaseImage();
+		}
+
+		/**
+		 * Gives the current bitmap back to the cache
+		 */
+		private void releaseImage() {
+			if (mBitmap != null) {
+				ShapeBitmapCache.getInstance().release(mBitmap);
+				mBitmap = null;
+			}
+			mShader = null;
+			mPaint.setShader(null);
+			mPaint.setColorFilter(null);
+		}
 
-			float max = getRealWidth() / 2;
+		/**
+		 * Gets the shared layout matching the current label settings
+		 */
+		private void updateLabelLayout() {
+			if (mLabel == null) {
+				mLabelLayout = null;
+			} else {
+				mLabelLayout = LabelLayout.obtain(mLabel, mLabelSize,
+						mLabelTypeface);
+			}
+		}
 
-			return (int) (mPosition.x + halfwidth + max + 0.5f);
+		/**
+		 * @return the needed width
+		 */
+		public int getNeededWidth() {
+			return mGeometry.getNeededWidth();
 		}
 
 		/**
 		 * @return the needed height
 		 */
 		public int getNeededHeight() {
-			float halfheight = (mRect.height() / 2);
+			return mGeometry.getNeededHeight();
+		}
 
-			float max = getRealHeight() / 2.0f;
+		/**
+		 * Computes the axis aligned bounds of this shape, including its label
+		 * and the emboss effect
+		 * 
+		 * @param bounds
+		 *            the rect to write the bounds into
+		 */
+		public void getBounds(final Rect bounds) {
+			float margin = BOUNDS_MARGIN_DP * mDipToPixel;
+			getMarginBounds(margin);
+			bounds.set((int) Math.floor(mBounds[0]),
+					(int) Math.floor(mBounds[1]),
+					(int) Math.ceil(mBounds[2]), (int) Math.ceil(mBounds[3]));
+		}
 
-			return (int) (mPosition.y + halfheight + max + 0.5f);
+		/**
+		 * @param rect
+		 *            a rectangle
+		 * @return if this shape (including the emboss effect) intersects the
+		 *         rect
+		 */
+		public boolean intersects(final Rect rect) {
+			float margin = BOUNDS_MARGIN_DP * mDipToPixel;
+			getMarginBounds(margin);
+			return (mBounds[0] < rect.right) && (mBounds[2] > rect.left)
+					&& (mBounds[1] < rect.bottom) && (mBounds[3] > rect.top);
 		}
 
 		/**
 		 * @param x
+		 *            x in the button coordinates
 		 * @param y
+		 *            y in the button coordinates
 		 * @return if the touch is inside the current shape
 		 */
 		public boolean checkTouch(final float x, final float y) {
@@ -205,88 +605,156 @@ public class ShapeButton extends View {
 				return false;
 			}
 
-			float x1, y1, cos, sin, cx, cy, x2, y2;
+			if (mGroup != null) {
+				float[] local = mGroup.mapToLocal(x, y);
+				return (local != null) && mGeometry.contains(local[0], local[1]);
+			}
 
-			cx = mPosition.x + (mRect.width() / 2);
-			cy = mPosition.y + (mRect.height() / 2);
-			cos = FloatMath.cos(mAngle * DEG_TO_RAD);
-			sin = FloatMath.sin(mAngle * DEG_TO_RAD);
+			return mGeometry.contains(x, y);
+		}
 
-			x1 = cos * (x - cx) + sin * (y - cy);
-			y1 = -sin * (x - cx) + cos * (y - cy);
+		/**
+		 * @param x
+		 *            x in the button coordinates
+		 * @param y
+		 *            y in the button coordinates
+		 * @return the distance from the point to the shape (0 if inside, or
+		 *         {@link Float#MAX_VALUE} if the shape is disabled)
+		 */
+		public float getDistance(final float x, final float y) {
 
-			boolean res;
-			switch (mShape) {
-			case rect:
-			case triangle: // TODO check triangle touch
-				res = (Math.abs(x1) <= (mRectF.width() / 2));
-				res &= (Math.abs(y1) <= (mRectF.height() / 2));
-				break;
-			case oval:
-				x2 = x1 / (mRectF.width() / 2);
-				y2 = y1 / (mRectF.height() / 2);
-				res = ((x2 * x2) + (y2 * y2) < 1);
-				break;
-			case arc:
-				x2 = x1 / (mRectF.width() / 2);
-				y2 = y1 / (mRectF.height() / 2);
-				res = ((x2 * x2) + (y2 * y2) < 1);
-
-				if (mThickness > 0) {
-					x2 = x1 / ((mRectF.width() / 2) - mThickness);
-					y2 = y1 / ((mRectF.height() / 2) - mThickness);
-					res &= ((x2 * x2) + (y2 * y2) > 1);
+			if (!mEnabled) {
+				return Float.MAX_VALUE;
+			}
+
+			if (mGroup != null) {
+				float[] local = mGroup.mapToLocal(x, y);
+				if (local == null) {
+					return Float.MAX_VALUE;
 				}
 
-				float angle = (float) (Math.atan2(y1, x1) / DEG_TO_RAD);
-				res &= isAngleInRange(angle);
-				break;
-			default:
-				res = false;
-				break;
+				// scaled back to the button coordinates (exact unless the
+				// group scale is not uniform)
+				float distance = mGeometry.distance(local[0], local[1]);
+				return (distance == Float.MAX_VALUE) ? distance : mGroup
+						.getMatrix().mapRadius(distance);
 			}
 
-			return res;
+			return mGeometry.distance(x, y);
 		}
 
-		private boolean isAngleInRange(float angle) {
+		/**
+		 * @param bounds
+		 *            the array to write the axis aligned bounds into (left,
+		 *            top, right, bottom), in the button coordinates
+		 * @param offset
+		 *            the offset of the bounds in the array
+		 */
+		void getWorldBounds(final float[] bounds, final int offset) {
+			getLocalBounds(bounds, offset, 0);
+			if (mGroup != null) {
+				mGroup.mapRect(bounds, offset);
+			}
+		}
 
-			float min, max, value;
-			min = Math.min(mStart, mEnd);
-			max = Math.max(mStart, mEnd);
+		/**
+		 * Computes the bounds of this shape with the given margin, through
+		 * its group transform, into {@link #mBounds}
+		 * 
+		 * @param margin
+		 *            the margin around the shape
+		 */
+		private void getMarginBounds(final float margin) {
+			getLocalBounds(mBounds, 0, margin);
+			if (mGroup != null) {
+				mGroup.mapRect(mBounds, 0);
+			}
+		}
 
-			value = angle;
-			while (value < min) {
-				value += 360;
+		/**
+		 * @param bounds
+		 *            the array to write the axis aligned bounds of the shape
+		 *            and its label into, in the group coordinates
+		 * @param offset
+		 *            the offset of the bounds in the array
+		 * @param margin
+		 *            the margin around the shape
+		 */
+		private void getLocalBounds(final float[] bounds, final int offset,
+				final float margin) {
+			mGeometry.getBounds(bounds, offset);
+			if (mLabelLayout != null) {
+				// the label is drawn centered, and is not clipped to the shape
+				mGeometry.union(bounds, offset, mLabelX, mLabelY,
+						mLabelLayout.getWidth() / 2.0f,
+						mLabelLayout.getHeight() / 2.0f);
 			}
 
-			return value < max;
+			bounds[offset] -= margin;
+			bounds[offset + 1] -= margin;
+			bounds[offset + 2] += margin;
+			bounds[offset + 3] += margin;
+		}
 
+		/**
+		 * Called when the position, size or angle change (after the old
+		 * bounds have been invalidated)
+		 */
+		private void onGeometryChanged() {
+			if (mOwner != null) {
+				mOwner.mIndexDirty = true;
+				mOwner.invalidateShape(this);
+			}
 		}
 
 		/**
-		 * @return the height axis aligned
+		 * Schedules a redraw of the area covered by this shape (coalesced by
+		 * the button with the other changes of the frame)
 		 */
-		private float getRealHeight() {
-			float cos = Math.abs(FloatMath.cos(mAngle * DEG_TO_RAD));
-			float sin = Math.abs(FloatMath.sin(mAngle * DEG_TO_RAD));
-			return ((sin * mRect.width()) + (cos * mRect.height()));
+		private void invalidateSelf() {
+			if (mOwner != null) {
+				mOwner.invalidateShape(this);
+			}
 		}
 
 		/**
-		 * @return the width axis aligned
+		 * @return the type of the shape
 		 */
-		private float getRealWidth() {
-			float cos = Math.abs(FloatMath.cos(mAngle * DEG_TO_RAD));
-			float sin = Math.abs(FloatMath.sin(mAngle * DEG_TO_RAD));
-			return ((cos * mRect.width()) + (sin * mRect.height()));
+		public ShapeType getType() {
+			return mShape;
 		}
 
 		/**
 		 * @return the zOrder
 		 */
 		public int getZOrder() {
-			return mZOrder;
+			return mGeometry.getZOrder();
+		}
+
+		/**
+		 * @return the geometry of this shape
+		 */
+		public ShapeGeometry getGeometry() {
+			return mGeometry;
+		}
+
+		/**
+		 * @return the group holding this shape (or null)
+		 */
+		public ShapeGroup getGroup() {
+			return mGroup;
+		}
+
+		/**
+		 * @param group
+		 *            the group whose transform applies to this shape (or null
+		 *            to place it directly in the button). The group must belong
+		 *            to the button the shape is added to.
+		 */
+		public void setGroup(final ShapeGroup group) {
+			invalidateSelf();
+			mGroup = group;
+			onGeometryChanged();
 		}
 
 		/**
@@ -322,7 +790,9 @@ public class ShapeButton extends View {
 		 *            the rotation angle (degrees)
 		 */
 		public void setAngle(int angle) {
-			this.mAngle = angle;
+			invalidateSelf();
+			mGeometry.setAngle(angle);
+			onGeometryChanged();
 		}
 
 		/**
@@ -332,9 +802,18 @@ public class ShapeButton extends View {
 		 *            the height of the shape (in pixels)
 		 */
 		public void setSize(final int width, final int height) {
+			invalidateSelf();
 			mRect.set(0, 0, width, height);
 			mRectF.set(0, 0, width, height);
+			mGeometry.setSize(width, height);
 			updatePath();
+			onGeometryChanged();
+
+			if (mImageRes != 0) {
+				// the sample size may change
+				updateShaderMatrix();
+				requestImage();
+			}
 		}
 
 		/**
@@ -342,7 +821,9 @@ public class ShapeButton extends View {
 		 *            the position of the shape
 		 */
 		public void setPosition(final Point pos) {
-			mPosition.set(pos.x, pos.y);
+			invalidateSelf();
+			mGeometry.setPosition(pos.x, pos.y);
+			onGeometryChanged();
 		}
 
 		/**
@@ -352,7 +833,9 @@ public class ShapeButton extends View {
 		 *            the y position of the shape
 		 */
 		public void setPosition(final int x, final int y) {
-			mPosition.set(x, y);
+			invalidateSelf();
+			mGeometry.setPosition(x, y);
+			onGeometryChanged();
 		}
 
 		/**
@@ -364,8 +847,83 @@ public class ShapeButton extends View {
 		 *            the z order of the shape
 		 */
 		public void setPosition(final int x, final int y, final int z) {
-			mPosition.set(x, y);
-			mZOrder = z;
+			invalidateSelf();
+			mGeometry.setPosition(x, y);
+			mGeometry.setZOrder(z);
+			onGeometryChanged();
+		}
+
+		/**
+		 * @return the label drawn on the shape (or null)
+		 */
+		public String getLabel() {
+			return mLabel;
+		}
+
+		/**
+		 * @param label
+		 *            the label to draw on the shape (or null for no label)
+		 */
+		public void setLabel(final String label) {
+			invalidateSelf();
+			mLabel = label;
+			updateLabelLayout();
+			onGeometryChanged();
+		}
+
+		/**
+		 * @param size
+		 *            the label text size (in pixels)
+		 */
+		public void setLabelSize(final float size) {
+			invalidateSelf();
+			mLabelSize = size;
+			updateLabelLayout();
+			onGeometryChanged();
+		}
+
+		/**
+		 * @param typeface
+		 *            the label typeface (or null for the default one)
+		 */
+		public void setLabelTypeface(final Typeface typeface) {
+			invalidateSelf();
+			mLabelTypeface = typeface;
+			updateLabelLayout();
+			onGeometryChanged();
+		}
+
+		/**
+		 * @param color
+		 *            the label color
+		 */
+		public void setLabelColor(final int color) {
+			mLabelColor = color;
+			invalidateSelf();
+		}
+
+		/**
+		 * @param resId
+		 *            the drawable used to fill the shape (or 0 to use the
+		 *            base / accent colors). The image is decoded in the
+		 *            background at the shape size, and shared with the other
+		 *            shapes using it.
+		 */
+		public void setImage(final int resId) {
+			if (resId == mImageRes) {
+				return;
+			}
+			mImageRes = resId;
+			releaseImage();
+			requestImage();
+			invalidateSelf();
+		}
+
+		/**
+		 * @return the drawable used to fill the shape (or 0)
+		 */
+		public int getImage() {
+			return mImageRes;
 		}
 
 		/**
@@ -374,6 +932,7 @@ public class ShapeButton extends View {
 		 */
 		public void setBaseColor(final int base) {
 			mBase = base;
+			invalidateSelf();
 		}
 
 		/**
@@ -382,6 +941,8 @@ public class ShapeButton extends View {
 		 */
 		public void setAccentColor(final int accent) {
 			mAccent = accent;
+			mAccentFilter = null;
+			invalidateSelf();
 		}
 
 		/**
@@ -389,7 +950,8 @@ public class ShapeButton extends View {
 		 *            the zOrder to set
 		 */
 		public void setZOrder(final int zOrder) {
-			mZOrder = zOrder;
+			mGeometry.setZOrder(zOrder);
+			invalidateSelf();
 		}
 
 		/**
@@ -397,7 +959,10 @@ public class ShapeButton extends View {
 		 *            the pressed to set
 		 */
 		public void setPressed(final boolean pressed) {
-			mPressed = pressed;
+			if (mPressed != pressed) {
+				mPressed = pressed;
+				invalidateSelf();
+			}
 		}
 
 		/**
@@ -405,7 +970,10 @@ public class ShapeButton extends View {
 		 *            the enabled to set
 		 */
 		public void setEnabled(final boolean enabled) {
-			mEnabled = enabled;
+			if (mEnabled != enabled) {
+				mEnabled = enabled;
+				invalidateSelf();
+			}
 		}
 
 		/**
@@ -415,75 +983,375 @@ public class ShapeButton extends View {
 		 * @param end
 		 */
 		public void setRange(final int start, final int end) {
-			mStart = start;
-			mEnd = end;
+			mGeometry.setRange(start, end);
 			updatePath();
+			invalidateSelf();
 		}
 
 		/**
 		 * @param thickness
 		 */
 		public void setThickness(int thickness) {
-			mThickness = thickness;
+			mGeometry.setThickness(thickness);
+			updatePath();
+			invalidateSelf();
+		}
+
+		/**
+		 * Sets the outline of a path shape, scaled to the shape size
+		 * 
+		 * @param pathData
+		 *            the SVG path data (eg : "M0,0 L10,0 L5,10 Z")
+		 * @throws IllegalArgumentException
+		 *             if the path data is invalid
+		 */
+		public void setPathData(final String pathData) {
+			mGeometry.setPathData((pathData == null) ? null : PathData
+					.obtain(pathData));
 			updatePath();
+			invalidateSelf();
+		}
+
+		/**
+		 * @return the SVG path data of a path shape (or null)
+		 */
+		public String getPathData() {
+			PathData data = mGeometry.getPathData();
+			return (data == null) ? null : data.getPathString();
 		}
 
-		final private Point mPosition;
+		final private ShapeGeometry mGeometry;
 		final private Paint mPaint;
 		final private Rect mRect;
-		final private RectF mRectF;
+		final private RectF mRectF, mInnerRectF;
+		final private float[] mBounds;
+		final private ShapeBitmapCache.Callback mImageCallback;
 		final private Path mPath;
+		final private PathBuilder mPathBuilder;
 		final private ShapeType mShape;
 
 		private String mId;
+		private float mDipToPixel;
 
 		private int mBase, mAccent;
-		private int mZOrder, mAngle, mStart, mEnd, mThickness;
 		private boolean mPressed, mEnabled;
-	}
 
-	/**
-	 * Simple constructor to use when creating a view from code.
-	 * 
-	 * @param context
-	 *            The Context the view is running in, through which it can
-	 *            access the current theme, resources, etc.
-	 */
-	public ShapeButton(Context context) {
-		super(context);
-		initShapeButton();
+		private String mLabel;
+		private LabelLayout mLabelLayout;
+		private Typeface mLabelTypeface;
+		private float mLabelSize, mLabelX, mLabelY;
+		private int mLabelColor;
+
+		private ShapeButton mOwner;
+		private ShapeGroup mGroup;
+		private int mImageRes, mImageGeneration;
+		private Bitmap mBitmap;
+		private BitmapShader mShader;
+		private Matrix mShaderMatrix;
+		private ColorFilter mAccentFilter;
+
+		private static final int DEFAULT_BASE = Color.argb(255, 214, 214, 214);
+		private static final int DEFAULT_ACCENT = Color.argb(255, 51, 173, 214);
+		private static final int DEFAULT_LABEL_COLOR = Color.BLACK;
+		private static final float DEFAULT_LABEL_SIZE_DP = 12;
 	}
 
 	/**
-	 * Constructor that is called when inflating a view from XML. This is called
-	 * when a view is being constructed from an XML file, supplying attributes
-	 * that were specified in the XML file. This version uses a default style of
-	 * 0, so the only attribute values applied are those in the Context's Theme
-	 * and the given AttributeSet.
-	 * 
-	 * The method onFinishInflate() will be called after all children have been
-	 * added.
+	 * A group of shapes sharing a transform (translation, rotation and scale),
+	 * nested in an optional parent group.
 	 * 
-	 * @param context
-	 *            The Context the view is running in, through which it can
-	 *            access the current theme, resources, etc.
-	 * @param attrsThe
-	 *            attributes of the XML tag that is inflating the view.
-	 * @see ShapeButton#ShapeButton(Context, AttributeSet, int)
+	 * The composed transform (from the group to the button coordinates) and
+	 * its inverse are cached, and only recomputed for the groups below a
+	 * changed one. The button keeps the bounds of each group, so that a whole
+	 * group outside of the clip is skipped without looking at its shapes.
 	 */
-	public ShapeButton(Context context, AttributeSet attrs) {
-		super(context, attrs);
-		initShapeButton();
-		readAttributes(attrs);
-	}
+	public static class ShapeGroup {
 
-	/**
-	 * Perform inflation from XML and apply a class-specific base style. This
-	 * constructor of View allows subclasses to use their own base style when
-	 * they are inflating. For example, a Button class's constructor would call
-	 * this version of the super class constructor and supply R.attr.buttonStyle
-	 * for defStyle; this allows the theme's button style to modify all of the
-	 * base view attributes (in particular its background) as well as the Button
+		/**
+		 * Creates a group, linked to its parent when attached to the button
+		 * (the groups read in the background are created on the loader
+		 * thread)
+		 * 
+		 * @param parent
+		 *            the parent group (or null)
+		 */
+		ShapeGroup(final ShapeGroup parent) {
+			mChildren = new ArrayList<ShapeGroup>();
+			mMatrix = new Matrix();
+			mInverse = new Matrix();
+			mBounds = new RectF();
+			mTempRect = new RectF();
+			mPoint = new float[2];
+			reset(parent);
+		}
+
+		/**
+		 * Restores the default transform, so that a removed group can be
+		 * reused by its button
+		 * 
+		 * @param parent
+		 *            the parent group (or null)
+		 */
+		void reset(final ShapeGroup parent) {
+			mParent = parent;
+			mChildren.clear();
+			mOwner = null;
+			mId = null;
+			mX = mY = mRotation = mPivotX = mPivotY = 0;
+			mScaleX = mScaleY = 1.0f;
+			mBounds.setEmpty();
+			mVisible = false;
+			mMatrixDirty = true;
+		}
+
+		/**
+		 * @return the transform from this group to the button coordinates
+		 *         (must not be modified)
+		 */
+		public Matrix getMatrix() {
+			if (mMatrixDirty) {
+				mMatrix.setScale(mScaleX, mScaleY, mPivotX, mPivotY);
+				mMatrix.postRotate(mRotation, mPivotX, mPivotY);
+				mMatrix.postTranslate(mX, mY);
+				if (mParent != null) {
+					mMatrix.postConcat(mParent.getMatrix());
+				}
+
+				mInvertible = mMatrix.invert(mInverse);
+				mMatrixDirty = false;
+			}
+			return mMatrix;
+		}
+
+		/**
+		 * @param x
+		 *            x in the button coordinates
+		 * @param y
+		 *            y in the button coordinates
+		 * @return the point in this group coordinates (a temporary array owned
+		 *         by the group), or null if the transform can't be inverted
+		 */
+		float[] mapToLocal(final float x, final float y) {
+			getMatrix();
+			if (!mInvertible) {
+				return null;
+			}
+
+			mPoint[0] = x;
+			mPoint[1] = y;
+			mInverse.mapPoints(mPoint);
+			return mPoint;
+		}
+
+		/**
+		 * Maps axis aligned bounds from this group to the button coordinates
+		 * 
+		 * @param bounds
+		 *            the bounds (left, top, right, bottom), replaced by the
+		 *            mapped ones
+		 * @param offset
+		 *            the offset of the bounds in the array
+		 */
+		void mapRect(final float[] bounds, final int offset) {
+			mTempRect.set(bounds[offset], bounds[offset + 1],
+					bounds[offset + 2], bounds[offset + 3]);
+			getMatrix().mapRect(mTempRect);
+			bounds[offset] = mTempRect.left;
+			bounds[offset + 1] = mTempRect.top;
+			bounds[offset + 2] = mTempRect.right;
+			bounds[offset + 3] = mTempRect.bottom;
+		}
+
+		/**
+		 * Marks the transform of this group (and of all the groups below) as
+		 * outdated. The groups below a dirty group are always dirty, so the
+		 * walk stops there.
+		 */
+		private void invalidateMatrix() {
+			if (mMatrixDirty) {
+				return;
+			}
+
+			mMatrixDirty = true;
+			final int count = mChildren.size();
+			for (int i = 0; i < count; ++i) {
+				mChildren.get(i).invalidateMatrix();
+			}
+		}
+
+		/**
+		 * Called when the transform of this group changes
+		 */
+		private void onTransformChanged() {
+			invalidateMatrix();
+			if (mOwner != null) {
+				mOwner.mIndexDirty = true;
+				mOwner.invalidateAll();
+			}
+		}
+
+		/**
+		 * @return the group id
+		 */
+		public String getId() {
+			return mId;
+		}
+
+		/**
+		 * @param id
+		 */
+		public void setId(final String id) {
+			mId = id;
+		}
+
+		/**
+		 * @return the parent group (or null)
+		 */
+		public ShapeGroup getParent() {
+			return mParent;
+		}
+
+		/**
+		 * @param x
+		 *            the x translation (in pixels)
+		 * @param y
+		 *            the y translation (in pixels)
+		 */
+		public void setTranslation(final float x, final float y) {
+			mX = x;
+			mY = y;
+			onTransformChanged();
+		}
+
+		/**
+		 * @param rotation
+		 *            the rotation around the pivot (degrees)
+		 */
+		public void setRotation(final float rotation) {
+			mRotation = rotation;
+			onTransformChanged();
+		}
+
+		/**
+		 * @param scaleX
+		 *            the horizontal scale around the pivot
+		 * @param scaleY
+		 *            the vertical scale around the pivot
+		 */
+		public void setScale(final float scaleX, final float scaleY) {
+			mScaleX = scaleX;
+			mScaleY = scaleY;
+			onTransformChanged();
+		}
+
+		/**
+		 * @param x
+		 *            the x of the rotation and scale center (in pixels, in
+		 *            the group coordinates)
+		 * @param y
+		 *            the y of the rotation and scale center (in pixels, in
+		 *            the group coordinates)
+		 */
+		public void setPivot(final float x, final float y) {
+			mPivotX = x;
+			mPivotY = y;
+			onTransformChanged();
+		}
+
+		/**
+		 * @return the x translation (in pixels)
+		 */
+		public float getTranslationX() {
+			return mX;
+		}
+
+		/**
+		 * @return the y translation (in pixels)
+		 */
+		public float getTranslationY() {
+			return mY;
+		}
+
+		/**
+		 * @return the rotation (degrees)
+		 */
+		public float getRotation() {
+			return mRotation;
+		}
+
+		/**
+		 * @return the horizontal scale
+		 */
+		public float getScaleX() {
+			return mScaleX;
+		}
+
+		/**
+		 * @return the vertical scale
+		 */
+		public float getScaleY() {
+			return mScaleY;
+		}
+
+		final private List<ShapeGroup> mChildren;
+		final private Matrix mMatrix, mInverse;
+		final private RectF mTempRect;
+		final private float[] mPoint;
+
+		/** bounds of the shapes in this group and below (button coordinates) */
+		final private RectF mBounds;
+		/** if the bounds intersect the clip of the frame being drawn */
+		private boolean mVisible;
+
+		private ShapeGroup mParent;
+		private ShapeButton mOwner;
+		private String mId;
+		private float mX, mY, mRotation, mScaleX, mScaleY, mPivotX, mPivotY;
+		private boolean mMatrixDirty, mInvertible;
+	}
+
+	/**
+	 * Simple constructor to use when creating a view from code.
+	 * 
+	 * @param context
+	 *            The Context the view is running in, through which it can
+	 *            access the current theme, resources, etc.
+	 */
+	public ShapeButton(Context context) {
+		super(context);
+		initShapeButton();
+	}
+
+	/**
+	 * Constructor that is called when inflating a view from XML. This is called
+	 * when a view is being constructed from an XML file, supplying attributes
+	 * that were specified in the XML file. This version uses a default style of
+	 * 0, so the only attribute values applied are those in the Context's Theme
+	 * and the given AttributeSet.
+	 * 
+	 * The method onFinishInflate() will be called after all children have been
+	 * added.
+	 * 
+	 * @param context
+	 *            The Context the view is running in, through which it can
+	 *            access the current theme, resources, etc.
+	 * @param attrsThe
+	 *            attributes of the XML tag that is inflating the view.
+	 * @see ShapeButton#ShapeButton(Context, AttributeSet, int)
+	 */
+	public ShapeButton(Context context, AttributeSet attrs) {
+		super(context, attrs);
+		initShapeButton();
+		readAttributes(attrs);
+	}
+
+	/**
+	 * Perform inflation from XML and apply a class-specific base style. This
+	 * constructor of View allows subclasses to use their own base style when
+	 * they are inflating. For example, a Button class's constructor would call
+	 * this version of the super class constructor and supply R.attr.buttonStyle
+	 * for defStyle; this allows the theme's button style to modify all of the
+	 * base view attributes (in particular its background) as well as the Button
 	 * class's attributes.
 	 * 
 	 * @param context
@@ -518,16 +1386,313 @@ public class ShapeButton extends View {
 		mListener = l;
 	}
 
+	/**
+	 * @param type
+	 *            the type of shape
+	 * @return a shape (taken from the shared pool when possible) to configure
+	 *         and add to this button
+	 */
+	public ShapeElement createShape(final ShapeType type) {
+		return ShapeElementPool.obtain(type, mDipToPixel);
+	}
+
+	/**
+	 * @param parent
+	 *            the parent group (or null)
+	 * @return a new group of this button, to put shapes in with
+	 *         {@link ShapeElement#setGroup(ShapeGroup)}
+	 */
+	public ShapeGroup createGroup(final ShapeGroup parent) {
+		ShapeGroup group = obtainGroup(parent);
+		attachGroup(group);
+		return group;
+	}
+
+	/**
+	 * @param parent
+	 *            the parent group (or null)
+	 * @return a group removed by {@link #reset()}, or a new one
+	 */
+	private ShapeGroup obtainGroup(final ShapeGroup parent) {
+		final int size = mGroupPool.size();
+		if (size == 0) {
+			return new ShapeGroup(parent);
+		}
+
+		ShapeGroup group = mGroupPool.remove(size - 1);
+		group.reset(parent);
+		return group;
+	}
+
+	/**
+	 * @param groupId
+	 *            a group id
+	 * @return the first group with the given id, or null
+	 */
+	public ShapeGroup getGroup(final String groupId) {
+		final int count = mGroups.size();
+		for (int i = 0; i < count; ++i) {
+			ShapeGroup group = mGroups.get(i);
+			if ((groupId != null) && groupId.equals(group.getId())) {
+				return group;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all the shapes (and groups) from this button and gives the
+	 * shapes back to the shared pool, the groups are kept for the next shapes
+	 * of this button. The removed shapes and groups must not be used anymore.
+	 */
+	public void reset() {
+		if (mLoader != null) {
+			mLoader.cancel();
+			mLoader = null;
+		}
+
+		final int count = mShapes.size();
+		for (int i = 0; i < count; ++i) {
+			ShapeElementPool.release(mShapes.get(i));
+		}
+		mShapes.clear();
+
+		final int groups = mGroups.size();
+		for (int i = 0; i < groups; ++i) {
+			ShapeGroup group = mGroups.get(i);
+			group.mOwner = null;
+			mGroupPool.add(group);
+		}
+		mGroups.clear();
+		mSelectedShape = -1;
+		mIndexDirty = true;
+
+		// the pending clicks and dirty area belong to the removed shapes
+		mPendingClicks.clear();
+		mPendingDirty.setEmpty();
+
+		requestLayout();
+		invalidateAll();
+	}
+
+	/**
+	 * Replaces the shapes of this button with the ones read from the given
+	 * Xml resource, reusing pooled shapes. Use this when a button is recycled
+	 * (eg in a list row).
+	 * 
+	 * @param xmlRes
+	 */
+	public void rebindShapesXml(int xmlRes) {
+		reset();
+		setShapesXml(xmlRes);
+	}
+
 	/**
 	 * @param shape
 	 *            the shape to add to the button
 	 */
 	public void addShape(ShapeElement shape) {
-		mShapes.add(shape);
+		// insert after the shapes with a lower or equal z order
+		int low = 0, high = mShapes.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (mShapes.get(mid).compareTo(shape) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		mShapes.add(low, shape);
+		shape.attach(this);
+		mIndexDirty = true;
+
+		invalidateAll();
+	}
+
+	/**
+	 * Adds the groups and shapes of a batch read in the background
+	 * 
+	 * @param groups
+	 *            the groups read in the batch (parents first)
+	 * @param shapes
+	 *            the shapes read in the batch
+	 */
+	void addShapes(final List<ShapeGroup> groups,
+			final List<ShapeElement> shapes) {
+		final int groupsCount = groups.size();
+		for (int i = 0; i < groupsCount; ++i) {
+			attachGroup(groups.get(i));
+		}
+
+		ShapeElement selected = (mSelectedShape >= 0) ? mShapes
+				.get(mSelectedShape) : null;
+
+		// a stable sort of the almost sorted list is cheaper than inserting
+		// the shapes one by one, and keeps the same order as addShape
+		final int count = shapes.size();
+		for (int i = 0; i < count; ++i) {
+			mShapes.add(shapes.get(i));
+		}
+		sortShapes();
 
-		Collections.sort(mShapes);
+		for (int i = 0; i < count; ++i) {
+			shapes.get(i).attach(this);
+		}
 
-		invalidate();
+		if (selected != null) {
+			mSelectedShape = mShapes.indexOf(selected);
+		}
+		mIndexDirty = true;
+
+		requestLayout();
+		invalidateAll();
+	}
+
+	/**
+	 * Sorts the shapes by z order, keeping the order of equal shapes (as
+	 * Collections.sort does), with a merge sort through arrays kept for the
+	 * next sorts instead of a copy of the list
+	 */
+	private void sortShapes() {
+		final int count = mShapes.size();
+		if (mSortedShapes.length < count) {
+			mSortedShapes = new ShapeElement[count * 2];
+			mSortBuffer = new ShapeElement[count * 2];
+		}
+
+		ShapeElement[] src = mSortedShapes, dst = mSortBuffer, swap;
+		for (int i = 0; i < count; ++i) {
+			src[i] = mShapes.get(i);
+		}
+
+		for (int width = 1; width < count; width *= 2) {
+			for (int low = 0; low < count; low += width * 2) {
+				int mid = Math.min(low + width, count);
+				int high = Math.min(low + (width * 2), count);
+				int i = low, j = mid;
+				for (int k = low; k < high; ++k) {
+					if ((j >= high)
+							|| ((i < mid) && (src[i].compareTo(src[j]) <= 0))) {
+						dst[k] = src[i++];
+					} else {
+						dst[k] = src[j++];
+					}
+				}
+			}
+			swap = src;
+			src = dst;
+			dst = swap;
+		}
+
+		for (int i = 0; i < count; ++i) {
+			mShapes.set(i, src[i]);
+		}
+
+		// do not keep the removed shapes
+		Arrays.fill(mSortedShapes, 0, count, null);
+		Arrays.fill(mSortBuffer, 0, count, null);
+	}
+
+	/**
+	 * Called when a background load is over
+	 * 
+	 * @param loader
+	 *            the loader
+	 * @param shapes
+	 *            the number of shapes read
+	 * @param duration
+	 *            the time spent loading
+	 * @param error
+	 *            the error which stopped the reading, or null
+	 */
+	void onShapesLoaded(final ShapeLoader loader, final int shapes,
+			final long duration, final Exception error) {
+		if (loader != mLoader) {
+			return;
+		}
+		mLoader = null;
+
+		if (mMetricsListener != null) {
+			mMetricsListener.onShapesParsed(this, shapes, duration);
+		}
+
+		if (error != null) {
+			Log.w("SB", "Error while loading shapes", error);
+			if (mLoadListener != null) {
+				mLoadListener.onShapesLoadFailed(this, error);
+			}
+		} else if (mLoadListener != null) {
+			mLoadListener.onShapesLoaded(this, shapes);
+		}
+	}
+
+	/**
+	 * @param x
+	 *            the x coordinate (in the view)
+	 * @param y
+	 *            the y coordinate (in the view)
+	 * @return the topmost enabled shape under the point, or null
+	 */
+	public ShapeElement getShapeAt(final float x, final float y) {
+		int index = findShapeAt(x - getPaddingLeft(), y - getPaddingTop(), 0);
+		return (index < 0) ? null : mShapes.get(index);
+	}
+
+	/**
+	 * @param x
+	 *            the x coordinate (in the view)
+	 * @param y
+	 *            the y coordinate (in the view)
+	 * @param radius
+	 *            the maximum distance from the point to the shape (in pixels)
+	 * @return the topmost enabled shape under the point if any, else the
+	 *         nearest enabled shape within the radius, or null
+	 */
+	public ShapeElement getNearestShape(final float x, final float y,
+			final float radius) {
+		int index = findShapeAt(x - getPaddingLeft(), y - getPaddingTop(),
+				radius);
+		return (index < 0) ? null : mShapes.get(index);
+	}
+
+	/**
+	 * Sets how far from a shape a touch can land and still select it. With a
+	 * tolerance of 0 (the default) touches must be strictly inside shapes.
+	 * 
+	 * @param tolerance
+	 *            the tolerance (in pixels)
+	 */
+	public void setTouchTolerance(final float tolerance) {
+		mTouchTolerance = Math.max(0, tolerance);
+	}
+
+	/**
+	 * @return the touch tolerance (in pixels)
+	 */
+	public float getTouchTolerance() {
+		return mTouchTolerance;
+	}
+
+	/**
+	 * Sets the listener receiving performance measurements. When no listener
+	 * is set, no measurement is done.
+	 * 
+	 * @param listener
+	 *            the listener (or null to disable the measurements)
+	 */
+	public void setMetricsListener(final MetricsListener listener) {
+		mMetricsListener = listener;
+	}
+
+	/**
+	 * Enables {@link Trace} sections around parsing, measure, draw and hit
+	 * testing (only available from API 18, ignored before)
+	 * 
+	 * @param enabled
+	 */
+	public void setTracingEnabled(final boolean enabled) {
+		mTracing = enabled
+				&& (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2);
 	}
 
 	/**
@@ -538,12 +1703,18 @@ public class ShapeButton extends View {
 		final int heightSpecMode = MeasureSpec.getMode(heightMeasureSpec);
 		final int widthSpecSize = MeasureSpec.getSize(widthMeasureSpec);
 		final int heightSpecSize = MeasureSpec.getSize(heightMeasureSpec);
+		final long start = (mMetricsListener == null) ? 0 : System.nanoTime();
+		beginSection(TRACE_MEASURE);
 
-		// Compute needed width
+		// Compute needed width (from the bounds through the group transforms)
+		updateIndex();
 		int neededWidth = 0, neededHeight = 0;
-		for (ShapeElement shape : mShapes) {
-			neededWidth = Math.max(neededWidth, shape.getNeededWidth());
-			neededHeight = Math.max(neededHeight, shape.getNeededHeight());
+		final int count = mShapes.size();
+		for (int i = 0; i < count; ++i) {
+			neededWidth = Math.max(neededWidth,
+					(int) (mShapeBounds[i * 4 + 2] + 0.5f));
+			neededHeight = Math.max(neededHeight,
+					(int) (mShapeBounds[i * 4 + 3] + 0.5f));
 		}
 
 		neededWidth += getPaddingLeft() + getPaddingRight();
@@ -577,6 +1748,10 @@ public class ShapeButton extends View {
 
 		setMeasuredDimension(neededWidth, neededHeight);
 
+		endSection();
+		if (mMetricsListener != null) {
+			mMetricsListener.onMeasured(this, count, System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -589,11 +1764,58 @@ public class ShapeButton extends View {
 			return;
 		}
 
-		// apply padding
-		canvas.translate(getPaddingLeft(), getPaddingTop());
+		final long start = (mMetricsListener == null) ? 0 : System.nanoTime();
+		beginSection(TRACE_DRAW);
+
+		// apply padding
+		canvas.translate(getPaddingLeft(), getPaddingTop());
+
+		// only draw the shapes visible in the clip
+		final boolean clipped = canvas.getClipBounds(mClipBounds);
+		final float margin = BOUNDS_MARGIN_DP * mDipToPixel;
+		updateIndex();
+		if (clipped) {
+			updateGroupsVisibility(mClipBounds, margin);
+		}
+
+		final int count = mShapes.size();
+		int drawn = 0;
+		ShapeGroup current = null;
+		for (int i = 0; i < count; ++i) {
+			ShapeElement shape = mShapes.get(i);
+			ShapeGroup group = shape.getGroup();
+			if (clipped) {
+				if ((group != null) && !group.mVisible) {
+					continue;
+				}
+				if (!intersects(mShapeBounds, i * 4, mClipBounds, margin)) {
+					continue;
+				}
+			}
+
+			// consecutive shapes of a group share the same canvas transform
+			if (group != current) {
+				if (current != null) {
+					canvas.restore();
+				}
+				if (group != null) {
+					canvas.save();
+					canvas.concat(group.getMatrix());
+				}
+				current = group;
+			}
 
-		for (ShapeElement shape : mShapes) {
 			shape.onDraw(canvas);
+			drawn++;
+		}
+		if (current != null) {
+			canvas.restore();
+		}
+
+		endSection();
+		if (mMetricsListener != null) {
+			mMetricsListener.onFrameDrawn(this, drawn, count - drawn,
+					System.nanoTime() - start);
 		}
 	}
 
@@ -602,43 +1824,38 @@ public class ShapeButton extends View {
 	 */
 	public boolean onTouchEvent(MotionEvent event) {
 
+		final float x = event.getX() - getPaddingLeft();
+		final float y = event.getY() - getPaddingTop();
+		ShapeElement shape;
+
+		// the pressed state changes invalidate the shapes through the frame
+		// scheduler, so a whole gesture redraws at most once per frame
 		switch (event.getAction()) {
 		case MotionEvent.ACTION_DOWN:
-			int count = mShapes.size();
-			mSelectedShape = -1;
-			for (int i = count - 1; i >= 0; --i) {
-				if (mShapes.get(i).checkTouch(event.getX() + getPaddingLeft(),
-						event.getY() + getPaddingRight())) {
-					mSelectedShape = i;
-					mShapes.get(i).setPressed(true);
-					invalidate();
-					break;
-				}
+			mSelectedShape = findShapeAt(x, y, mTouchTolerance);
+			if (mSelectedShape >= 0) {
+				shape = mShapes.get(mSelectedShape);
+				shape.setPressed(true);
 			}
 			break;
 		case MotionEvent.ACTION_MOVE:
 			if (mSelectedShape >= 0) {
-				if (!mShapes.get(mSelectedShape).checkTouch(
-						event.getX() + getPaddingLeft(),
-						event.getY() + getPaddingRight())) {
-					mShapes.get(mSelectedShape).setPressed(false);
-					invalidate();
+				shape = mShapes.get(mSelectedShape);
+				if (!checkShapeTouch(shape, x, y)) {
+					shape.setPressed(false);
 					mSelectedShape = -1;
 				}
 			}
 			break;
 		case MotionEvent.ACTION_UP:
 			if (mSelectedShape >= 0) {
-				if (mShapes.get(mSelectedShape).checkTouch(
-						event.getX() + getPaddingLeft(),
-						event.getY() + getPaddingRight())) {
-					if (mListener != null) {
-						mListener.onClick(this, mShapes.get(mSelectedShape)
-								.getId());
-					}
+				shape = mShapes.get(mSelectedShape);
+				if (checkShapeTouch(shape, x, y) && (mListener != null)) {
+					// dispatched with the next frame, once released
+					mPendingClicks.add(shape.getId());
+					scheduleFrame();
 				}
-				mShapes.get(mSelectedShape).setPressed(false);
-				invalidate();
+				shape.setPressed(false);
 			}
 			break;
 		}
@@ -646,6 +1863,54 @@ public class ShapeButton extends View {
 		return (mSelectedShape >= 0);
 	}
 
+	/**
+	 * @see android.view.View#onAttachedToWindow()
+	 */
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+
+		mAttached = true;
+		final int count = mShapes.size();
+		for (int i = 0; i < count; ++i) {
+			mShapes.get(i).requestImage();
+		}
+	}
+
+	/**
+	 * @see android.view.View#onDetachedFromWindow()
+	 */
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+
+		// a pending load would post its shapes to a view which is gone
+		if (mLoader != null) {
+			mLoader.cancel();
+			mLoader = null;
+		}
+
+		// give the images back to the shared cache, so that they can be
+		// evicted and reused while this view is not displayed
+		mAttached = false;
+		final int count = mShapes.size();
+		for (int i = 0; i < count; ++i) {
+			mShapes.get(i).detachImage();
+		}
+
+		// drop the scheduled frame, so that the choreographer (or handler)
+		// does not keep this view, and clicks are not dispatched once gone
+		if (mFrameScheduled) {
+			if ((Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+					&& (mFrameCallback != null)) {
+				Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+			}
+			mHandler.removeCallbacks(mFrameRunnable);
+			mFrameScheduled = false;
+		}
+		mPendingInvalidateAll = false;
+		mPendingDirty.setEmpty();
+		mPendingClicks.clear();
+	}
+
 	/**
 	 * Set the Xml resource to read the shapes settings from
 	 * 
@@ -659,6 +1924,52 @@ public class ShapeButton extends View {
 		}
 	}
 
+	/**
+	 * Reads shapes xml from a stream in the background, adding the shapes to
+	 * this button in batches while reading (on the UI thread). Cancels any
+	 * previous load.
+	 * 
+	 * @param input
+	 *            the stream to read (closed once read)
+	 */
+	public void loadShapes(final InputStream input) {
+		startLoader(new ShapeLoader(this, input));
+	}
+
+	/**
+	 * Reads a shapes xml file in the background (large files are memory
+	 * mapped), adding the shapes to this button in batches while reading (on
+	 * the UI thread). Cancels any previous load.
+	 * 
+	 * @param file
+	 *            the file to read
+	 */
+	public void loadShapes(final File file) {
+		startLoader(new ShapeLoader(this, file));
+	}
+
+	/**
+	 * Reads shapes xml from a buffer in the background, adding the shapes to
+	 * this button in batches while reading (on the UI thread). Cancels any
+	 * previous load.
+	 * 
+	 * @param buffer
+	 *            the buffer to read, from its position to its limit (the
+	 *            buffer position is not modified)
+	 */
+	public void loadShapes(final ByteBuffer buffer) {
+		startLoader(new ShapeLoader(this, buffer));
+	}
+
+	/**
+	 * @param listener
+	 *            the listener notified when a background load is over (or
+	 *            null)
+	 */
+	public void setOnShapesLoadedListener(final OnShapesLoadedListener listener) {
+		mLoadListener = listener;
+	}
+
 	/**
 	 * @param shapeId
 	 * @param enabled
@@ -668,21 +1979,354 @@ public class ShapeButton extends View {
 			return;
 		}
 
-		for (ShapeElement elem : mShapes) {
+		final int count = mShapes.size();
+		for (int i = 0; i < count; ++i) {
+			ShapeElement elem = mShapes.get(i);
 			if (shapeId.equals(elem.getId())) {
+				// invalidates through the frame scheduler
 				elem.setEnabled(enabled);
-				invalidate(); // invalidate the rect only
 			}
 		}
 	}
 
+	/**
+	 * @param x
+	 *            the x coordinate (in the shapes coordinates)
+	 * @param y
+	 *            the y coordinate (in the shapes coordinates)
+	 * @param radius
+	 *            the tolerance
+	 * @return the index of the topmost enabled shape under the given point,
+	 *         else of the nearest enabled shape within the radius, or -1
+	 */
+	private int findShapeAt(final float x, final float y, final float radius) {
+		final long start = (mMetricsListener == null) ? 0 : System.nanoTime();
+		beginSection(TRACE_HIT_TEST);
+
+		updateIndex();
+		final int candidates = mIndex.query(x - radius, y - radius, x + radius,
+				y + radius, mCandidates);
+
+		// the topmost shape containing the point wins
+		int res = -1, index;
+		for (int i = 0; i < candidates; ++i) {
+			index = mCandidates[i];
+			if ((index > res) && mShapes.get(index).checkTouch(x, y)) {
+				res = index;
+			}
+		}
+
+		// else the closest one (the topmost on equal distance)
+		if ((res < 0) && (radius > 0)) {
+			float best = radius, distance;
+			for (int i = 0; i < candidates; ++i) {
+				index = mCandidates[i];
+				distance = mShapes.get(index).getDistance(x, y);
+				if ((distance < best) || ((distance == best) && (index > res))) {
+					best = distance;
+					res = index;
+				}
+			}
+		}
+
+		endSection();
+		if (mMetricsListener != null) {
+			mMetricsListener.onHitTest(this, candidates, System.nanoTime()
+					- start);
+		}
+		return res;
+	}
+
+	/**
+	 * @param shape
+	 * @param x
+	 * @param y
+	 * @return if the touch is inside the given shape (or within the touch
+	 *         tolerance)
+	 */
+	private boolean checkShapeTouch(final ShapeElement shape, final float x,
+			final float y) {
+		final long start = (mMetricsListener == null) ? 0 : System.nanoTime();
+		beginSection(TRACE_HIT_TEST);
+
+		boolean res;
+		if (mTouchTolerance > 0) {
+			res = (shape.getDistance(x, y) <= mTouchTolerance);
+		} else {
+			res = shape.checkTouch(x, y);
+		}
+
+		endSection();
+		if (mMetricsListener != null) {
+			mMetricsListener.onHitTest(this, 1, System.nanoTime() - start);
+		}
+		return res;
+	}
+
+	/**
+	 * Rebuilds the spatial index of the shapes if they changed
+	 */
+	private void updateIndex() {
+		if (!mIndexDirty) {
+			return;
+		}
+
+		final int count = mShapes.size();
+		if (mCandidates.length < count) {
+			int capacity = Math.max(count, mCandidates.length * 2);
+			mCandidates = new int[capacity];
+			mShapeBounds = new float[capacity * 4];
+		}
+
+		final int groups = mGroups.size();
+		for (int i = 0; i < groups; ++i) {
+			mGroups.get(i).mBounds.setEmpty();
+		}
+
+		// the shapes (and groups) bounds, in the button coordinates
+		float left, top, right, bottom;
+		for (int i = 0; i < count; ++i) {
+			ShapeElement shape = mShapes.get(i);
+			shape.getWorldBounds(mShapeBounds, i * 4);
+
+			left = mShapeBounds[i * 4];
+			top = mShapeBounds[i * 4 + 1];
+			right = mShapeBounds[i * 4 + 2];
+			bottom = mShapeBounds[i * 4 + 3];
+			for (ShapeGroup group = shape.getGroup(); group != null; group = group
+					.getParent()) {
+				group.mBounds.union(left, top, right, bottom);
+			}
+		}
+
+		mIndex.build(mShapeBounds, count);
+		mIndexDirty = false;
+	}
+
+	/**
+	 * Finds the groups intersecting the clip (the groups are ordered parents
+	 * first, and a group is hidden with its parent)
+	 * 
+	 * @param clip
+	 *            the clip bounds
+	 * @param margin
+	 *            the margin around the shapes
+	 */
+	private void updateGroupsVisibility(final Rect clip, final float margin) {
+		final int count = mGroups.size();
+		for (int i = 0; i < count; ++i) {
+			ShapeGroup group = mGroups.get(i);
+			ShapeGroup parent = group.getParent();
+			RectF bounds = group.mBounds;
+			group.mVisible = ((parent == null) || parent.mVisible)
+					&& (bounds.left - margin < clip.right)
+					&& (bounds.right + margin > clip.left)
+					&& (bounds.top - margin < clip.bottom)
+					&& (bounds.bottom + margin > clip.top);
+		}
+	}
+
+	/**
+	 * @param bounds
+	 *            an array of bounds (left, top, right, bottom)
+	 * @param offset
+	 *            the offset of the bounds in the array
+	 * @param rect
+	 *            a rectangle
+	 * @param margin
+	 *            the margin around the bounds
+	 * @return if the bounds (and margin) intersect the rectangle
+	 */
+	private static boolean intersects(final float[] bounds, final int offset,
+			final Rect rect, final float margin) {
+		return (bounds[offset] - margin < rect.right)
+				&& (bounds[offset + 2] + margin > rect.left)
+				&& (bounds[offset + 1] - margin < rect.bottom)
+				&& (bounds[offset + 3] + margin > rect.top);
+	}
+
+	/**
+	 * Cancels the current load and starts the given one
+	 * 
+	 * @param loader
+	 */
+	private void startLoader(final ShapeLoader loader) {
+		if (mLoader != null) {
+			mLoader.cancel();
+		}
+		mLoader = loader;
+		loader.start();
+	}
+
+	/**
+	 * Adds a group (read or created) to this button, and links it to its
+	 * parent (on the UI thread, the parent may already be attached)
+	 * 
+	 * @param group
+	 */
+	private void attachGroup(final ShapeGroup group) {
+		group.mOwner = this;
+		if (group.mParent != null) {
+			group.mParent.mChildren.add(group);
+		}
+		mGroups.add(group);
+	}
+
+	/**
+	 * Schedules the invalidation of the area covered by the given shape with
+	 * the next frame
+	 * 
+	 * @param shape
+	 */
+	private void invalidateShape(final ShapeElement shape) {
+		if (mPendingInvalidateAll) {
+			return;
+		}
+
+		shape.getBounds(mDirtyRect);
+		mDirtyRect.offset(getPaddingLeft(), getPaddingTop());
+		mPendingDirty.union(mDirtyRect);
+		scheduleFrame();
+	}
+
+	/**
+	 * Schedules the invalidation of the whole view with the next frame
+	 */
+	private void invalidateAll() {
+		mPendingInvalidateAll = true;
+		scheduleFrame();
+	}
+
+	/**
+	 * Makes sure the pending invalidations and clicks are handled with the
+	 * next frame (through the {@link Choreographer} from API 16, else a
+	 * delayed message)
+	 */
+	private void scheduleFrame() {
+		if (mFrameScheduled) {
+			return;
+		}
+		mFrameScheduled = true;
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			if (mFrameCallback == null) {
+				mFrameCallback = new ChoreographerCallback();
+			}
+			Choreographer.getInstance().postFrameCallback(mFrameCallback);
+		} else {
+			mHandler.postDelayed(mFrameRunnable, FRAME_DELAY_MS);
+		}
+	}
+
+	/**
+	 * Issues the invalidation merged from all the changes since the last
+	 * frame, then dispatches the pending clicks
+	 */
+	private void onFrame() {
+		mFrameScheduled = false;
+
+		if (mPendingInvalidateAll) {
+			if (mMetricsListener != null) {
+				mMetricsListener.onInvalidate(this, getWidth() * getHeight());
+			}
+			invalidate();
+		} else if (!mPendingDirty.isEmpty()) {
+			if (mMetricsListener != null) {
+				mMetricsListener.onInvalidate(this, mPendingDirty.width()
+						* mPendingDirty.height());
+			}
+			invalidate(mPendingDirty);
+		}
+		mPendingInvalidateAll = false;
+		mPendingDirty.setEmpty();
+
+		if (mPendingClicks.isEmpty()) {
+			return;
+		}
+
+		// swap the lists, so that the listeners can click again
+		List<String> clicks = mPendingClicks;
+		mPendingClicks = mDispatchedClicks;
+		mDispatchedClicks = clicks;
+
+		final int count = clicks.size();
+		for (int i = 0; i < count; ++i) {
+			if (mListener != null) {
+				mListener.onClick(this, clicks.get(i));
+			}
+		}
+		clicks.clear();
+	}
+
+	/**
+	 * Runs the frame work on the {@link Choreographer} (API 16+ only)
+	 */
+	private final class ChoreographerCallback implements Choreographer.FrameCallback {
+		public void doFrame(final long frameTimeNanos) {
+			onFrame();
+		}
+	}
+
+	/**
+	 * Starts a trace section if tracing is enabled
+	 * 
+	 * @param name
+	 *            the section name
+	 */
+	private void beginSection(final String name) {
+		if (mTracing) {
+			Trace.beginSection(name);
+		}
+	}
+
+	/**
+	 * Ends the current trace section if tracing is enabled
+	 */
+	private void endSection() {
+		if (mTracing) {
+			Trace.endSection();
+		}
+	}
+
 	/**	
 	 * Initializes the specifics for a shape button
 	 */
 	private void initShapeButton() {
 		setLayerType(View.LAYER_TYPE_SOFTWARE, null);
 		mShapes = new ArrayList<ShapeElement>();
+		mGroups = new ArrayList<ShapeGroup>();
+		mGroupPool = new ArrayList<ShapeGroup>();
+		mReadShapes = new ArrayList<ShapeElement>();
+		mReadGroups = new ArrayList<ShapeGroup>();
+		mSortedShapes = mSortBuffer = new ShapeElement[0];
+		mSelectedShape = -1;
+		mClipBounds = new Rect();
+		mDirtyRect = new Rect();
+		mPendingDirty = new Rect();
+		mPendingClicks = new ArrayList<String>();
+		mDispatchedClicks = new ArrayList<String>();
+		mHandler = new Handler();
+		mFrameRunnable = new Runnable() {
+			public void run() {
+				onFrame();
+			}
+		};
+		mIndex = new ShapeGrid();
+		mCandidates = new int[0];
+		mShapeBounds = new float[0];
 		mDipToPixel = getContext().getResources().getDisplayMetrics().density;
+		mSpToPixel = getContext().getResources().getDisplayMetrics().scaledDensity;
+		mXmlHandler = new XmlShapesHandler(new ShapeConsumer() {
+			public void onGroup(final ShapeGroup group) {
+				mReadGroups.add(group);
+			}
+
+			public boolean onShape(final ShapeElement shape) {
+				mReadShapes.add(shape);
+				return true;
+			}
+		}, true);
+		mXmlReader = new ShapeXmlReader(mDipToPixel, mSpToPixel);
 
 		if (isInEditMode()) {
 			return;
@@ -704,6 +2348,9 @@ public class ShapeButton extends View {
 		TypedArray a = getContext().obtainStyledAttributes(attrs,
 				R.styleable.ShapeButton);
 
+		mTouchTolerance = a.getDimension(
+				R.styleable.ShapeButton_touchTolerance, 0);
+
 		int shapes = a.getResourceId(R.styleable.ShapeButton_shapes, 0);
 		if (shapes != 0) {
 			try {
@@ -723,121 +2370,271 @@ public class ShapeButton extends View {
 	 */
 	private void readShapesXml(int xmlRes) throws XmlPullParserException,
 			IOException {
-		XmlPullParser xpp = getContext().getResources().getXml(xmlRes);
-
-		String name;
-		ShapeElement shape;
-		int event = xpp.getEventType();
-		while (event != XmlPullParser.END_DOCUMENT) {
-			switch (event) {
-			case XmlPullParser.START_TAG:
-				name = xpp.getName();
-				ShapeType type = getType(name);
-
-				if (type != null) {
-					shape = new ShapeElement(ShapeType.valueOf(name));
-					readShapeConfiguration(xpp, shape);
-					addShape(shape);
-				}
-				break;
-			}
-			event = xpp.next();
+		XmlResourceParser xpp = getContext().getResources().getXml(xmlRes);
+		try {
+			readShapesXml(xpp);
+		} finally {
+			xpp.close();
 		}
 	}
 
 	/**
-	 * @param name
-	 *            the name of the shape
-	 * @return the enum value or null
+	 * Reads the shapes on the UI thread, with the reader, lists and groups
+	 * of this button, so that rebinding a recycled button does not allocate
+	 * 
+	 * @param xpp
+	 *            the pull parser
 	 */
-	private ShapeType getType(String name) {
-		ShapeType res;
+	void readShapesXml(final XmlPullParser xpp) throws XmlPullParserException,
+			IOException {
+		final long start = (mMetricsListener == null) ? 0 : System.nanoTime();
+		beginSection(TRACE_PARSE);
 
+		// the shapes are added at once (and sorted once) : inserting them one
+		// by one in a random z order is quadratic
+		int shapes;
 		try {
-			res = ShapeType.valueOf(name);
-		} catch (IllegalArgumentException e) {
-			// not a valid shape name
-			Log.w("SB", "Unknown shape type : " + name);
-			res = null;
+			mXmlHandler.start();
+			shapes = mXmlReader.read(xpp, mXmlHandler);
+			addShapes(mReadGroups, mReadShapes);
+		} finally {
+			mReadGroups.clear();
+			mReadShapes.clear();
+			endSection();
 		}
 
-		return res;
-
+		if (mMetricsListener != null) {
+			mMetricsListener.onShapesParsed(this, shapes, System.nanoTime()
+					- start);
+		}
 	}
 
 	/**
-	 * Reads the common values
+	 * Reads the groups and shapes from a shapes xml. This does not touch the
+	 * button state, so that it can run on a background thread : the read
+	 * groups and shapes are handed to the consumer.
 	 * 
 	 * @param xpp
 	 *            the pull parser
+	 * @param consumer
+	 *            the consumer receiving the groups and shapes
+	 * @return the number of shapes read
+	 */
+	int parseShapes(final XmlPullParser xpp, final ShapeConsumer consumer)
+			throws XmlPullParserException, IOException {
+		ShapeXmlReader reader = new ShapeXmlReader(mDipToPixel, mSpToPixel);
+		return reader.read(xpp, new XmlShapesHandler(consumer, false));
+	}
+
+	/**
+	 * Creates the groups and shapes read from a shapes xml, and hands them
+	 * to a consumer
+	 */
+	private final class XmlShapesHandler implements ShapeXmlReader.Handler {
+
+		/**
+		 * @param consumer
+		 *            the consumer receiving the groups and shapes
+		 * @param pooled
+		 *            if the groups can be taken from the ones removed from
+		 *            this button (on the UI thread only)
+		 */
+		XmlShapesHandler(final ShapeConsumer consumer, final boolean pooled) {
+			mConsumer = consumer;
+			mPooled = pooled;
+		}
+
+		/**
+		 * Prepares the handler to read a new document
+		 */
+		void start() {
+			mGroup = null;
+		}
+
+		public void onGroupStart(final GroupDefinition definition) {
+			mGroup = mPooled ? obtainGroup(mGroup) : new ShapeGroup(mGroup);
+			applyGroupDefinition(definition, mGroup);
+			mConsumer.onGroup(mGroup);
+		}
+
+		public void onGroupEnd() {
+			if (mGroup != null) {
+				mGroup = mGroup.getParent();
+			}
+		}
+
+		public boolean onShape(final ShapeDefinition definition) {
+			ShapeElement shape = createShape(definition.getType());
+			applyShapeDefinition(definition, shape);
+			shape.setGroup(mGroup);
+			return mConsumer.onShape(shape);
+		}
+
+		public void onUnknownTag(final String name) {
+			// not a valid shape name
+			Log.w("SB", "Unknown shape type : " + name);
+		}
+
+		final private ShapeConsumer mConsumer;
+		final private boolean mPooled;
+		private ShapeGroup mGroup;
+	}
+
+	/**
+	 * Applies a shape read from xml
+	 * 
+	 * @param definition
+	 *            the shape definition
 	 * @param element
-	 *            the element to read into
+	 *            the element to configure
 	 */
-	private void readShapeConfiguration(final XmlPullParser xpp,
+	private void applyShapeDefinition(final ShapeDefinition definition,
 			final ShapeElement element) {
-		int x, y, z, width, height, angle, start, end, thickness;
-		x = y = z = width = height = angle = start = end = thickness = 0;
-		int count = xpp.getAttributeCount();
-		String name;
-		for (int i = 0; i < count; ++i) {
-			name = xpp.getAttributeName(i);
-			if ("x".equalsIgnoreCase(name)) {
-				x = getPixelSize(xpp.getAttributeValue(i));
-			} else if ("y".equalsIgnoreCase(name)) {
-				y = getPixelSize(xpp.getAttributeValue(i));
-			} else if ("z".equalsIgnoreCase(name)) {
-				z = getPixelSize(xpp.getAttributeValue(i));
-			} else if ("width".equalsIgnoreCase(name)) {
-				width = getPixelSize(xpp.getAttributeValue(i));
-			} else if ("height".equalsIgnoreCase(name)) {
-				height = getPixelSize(xpp.getAttributeValue(i));
-			} else if ("thickness".equalsIgnoreCase(name)) {
-				thickness = getPixelSize(xpp.getAttributeValue(i));
-			} else if ("angle".equalsIgnoreCase(name)) {
-				angle = Integer.valueOf(xpp.getAttributeValue(i));
-			} else if ("start".equalsIgnoreCase(name)) {
-				start = Integer.valueOf(xpp.getAttributeValue(i));
-			} else if ("end".equalsIgnoreCase(name)) {
-				end = Integer.valueOf(xpp.getAttributeValue(i));
-			} else if ("id".equalsIgnoreCase(name)) {
-				element.setId(xpp.getAttributeValue(i));
-			} else if ("base".equalsIgnoreCase(name)) {
-				element.setBaseColor(Color.parseColor(xpp.getAttributeValue(i)));
-			} else if ("accent".equalsIgnoreCase(name)) {
-				element.setAccentColor(Color.parseColor(xpp
-						.getAttributeValue(i)));
-			}
-		}
-
-		element.setPosition(x, y, z);
-		element.setSize(width, height);
-		element.setAngle(angle);
-		element.setRange(start, end);
-		element.setThickness(thickness);
+		element.setId(definition.getId());
+		if (definition.hasBaseColor()) {
+			element.setBaseColor(definition.getBaseColor());
+		}
+		if (definition.hasAccentColor()) {
+			element.setAccentColor(definition.getAccentColor());
+		}
+		if (definition.hasLabelSize()) {
+			element.setLabelSize(definition.getLabelSize());
+		}
+		if (definition.hasLabelColor()) {
+			element.setLabelColor(definition.getLabelColor());
+		}
+		if (definition.getLabelStyle() != null) {
+			element.setLabelTypeface(getTypeface(definition.getLabelStyle()));
+		}
+
+		// set last, so the label layout is only looked up once
+		element.setLabel(definition.getLabel());
+
+		element.setPosition(definition.getX(), definition.getY(),
+				definition.getZOrder());
+		element.setSize(definition.getWidth(), definition.getHeight());
+		element.setAngle(definition.getAngle());
+		element.setRange(definition.getStart(), definition.getEnd());
+		element.setThickness(definition.getThickness());
+		if (definition.getPathData() != null) {
+			try {
+				element.setPathData(definition.getPathData());
+			} catch (IllegalArgumentException e) {
+				Log.w("SB", "Invalid path data : " + definition.getPathData(),
+						e);
+			}
+		}
+		element.setImage(getResourceId(definition.getImage()));
+	}
+
+	/**
+	 * Applies the transform of a group read from xml
+	 * 
+	 * @param definition
+	 *            the group definition
+	 * @param group
+	 *            the group to configure
+	 */
+	private void applyGroupDefinition(final GroupDefinition definition,
+			final ShapeGroup group) {
+		group.setId(definition.getId());
+		group.setTranslation(definition.getX(), definition.getY());
+		group.setRotation(definition.getAngle());
+		group.setScale(definition.getScaleX(), definition.getScaleY());
+		group.setPivot(definition.getPivotX(), definition.getPivotY());
 	}
 
 	/**
 	 * @param value
-	 *            a value (dp, px, ...)
-	 * @return the corresponding pixel value
-	 */
-	private int getPixelSize(String value) {
-		int pixel;
-		if (TextUtils.isEmpty(value)) {
-			pixel = 0;
-		} else if (value.endsWith("px")) {
-			pixel = Integer.valueOf(value.substring(0, value.length() - 2));
-		} else if (value.endsWith("dp")) {
-			int dp = Integer.valueOf(value.substring(0, value.length() - 2));
-			pixel = (int) ((dp * mDipToPixel) + 0.5f);
+	 *            a resource reference (eg : @drawable/foo, or @2130837504 as
+	 *            read from compiled xml), or null
+	 * @return the referenced resource, or 0
+	 */
+	private int getResourceId(final String value) {
+		if ((value == null) || !value.startsWith("@")) {
+			return 0;
+		}
+
+		// compiled reference (@0x7f020000 as decimal), parsed in place
+		final int length = value.length();
+		long id = 0;
+		int i = 1;
+		while ((i < length) && (i < 12)) {
+			int digit = Character.digit(value.charAt(i), 10);
+			if (digit < 0) {
+				break;
+			}
+			id = (id * 10) + digit;
+			++i;
+		}
+		if ((i == length) && (i > 1) && (id <= Integer.MAX_VALUE)) {
+			return (int) id;
+		}
+
+		// named reference (@drawable/foo)
+		return getResources().getIdentifier(value.substring(1), "drawable",
+				getContext().getPackageName());
+	}
+
+	/**
+	 * @param style
+	 *            a style name (normal, bold, italic, bold_italic)
+	 * @return the corresponding default typeface
+	 */
+	private Typeface getTypeface(final String style) {
+		int res;
+		if ("bold".equalsIgnoreCase(style)) {
+			res = Typeface.BOLD;
+		} else if ("italic".equalsIgnoreCase(style)) {
+			res = Typeface.ITALIC;
+		} else if ("bold_italic".equalsIgnoreCase(style)) {
+			res = Typeface.BOLD_ITALIC;
 		} else {
-			pixel = Integer.valueOf(value);
+			res = Typeface.NORMAL;
 		}
-		return pixel;
+		return Typeface.defaultFromStyle(res);
 	}
 
+	private static final String TRACE_PARSE = "ShapeButton#parse";
+	private static final String TRACE_MEASURE = "ShapeButton#measure";
+	private static final String TRACE_DRAW = "ShapeButton#draw";
+	private static final String TRACE_HIT_TEST = "ShapeButton#hitTest";
+
+	/** the margin around a shape covered by the emboss effect */
+	private static final float BOUNDS_MARGIN_DP = 2;
+
+	/** the frame delay used when the Choreographer is not available */
+	private static final long FRAME_DELAY_MS = 16;
+
 	private List<ShapeElement> mShapes;
+	private List<ShapeGroup> mGroups;
+	private List<ShapeGroup> mGroupPool;
+	private ShapeElement[] mSortedShapes, mSortBuffer;
+	private ShapeXmlReader mXmlReader;
+	private XmlShapesHandler mXmlHandler;
+	private List<ShapeElement> mReadShapes;
+	private List<ShapeGroup> mReadGroups;
 	private float mDipToPixel;
+	private float mSpToPixel;
 	private int mSelectedShape;
 	private OnClickListener mListener;
+	private OnShapesLoadedListener mLoadListener;
+	private ShapeLoader mLoader;
+	private boolean mAttached;
+	private MetricsListener mMetricsListener;
+	private boolean mTracing;
+	private Rect mClipBounds, mDirtyRect;
+	private float mTouchTolerance;
+
+	private boolean mFrameScheduled, mPendingInvalidateAll;
+	private Rect mPendingDirty;
+	private List<String> mPendingClicks, mDispatchedClicks;
+	private Handler mHandler;
+	private Runnable mFrameRunnable;
+	private ChoreographerCallback mFrameCallback;
+
+	private ShapeGrid mIndex;
+	private boolean mIndexDirty;
+	private int[] mCandidates;
+	private float[] mShapeBounds;
 }
@@ -0,0 +1,102 @@
+package fr.xgouchet.shapebutton.widget;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.EmbossMaskFilter;
+import android.graphics.MaskFilter;
+import fr.xgouchet.shapebutton.geometry.ShapeType;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeElement;
+
+/**
+ * A pool of {@link ShapeElement}, shared by all the {@link ShapeButton}, and
+ * keyed by {@link ShapeType}. Released elements are cleared and handed back
+ * by {@link #obtain(ShapeType, float)}, so that rebinding a ShapeButton (eg in
+ * a list row) reuses the elements instead of allocating new ones.
+ */
+final class ShapeElementPool {
+
+	/** the maximum number of released elements kept for each type */
+	public static final int MAX_POOL_SIZE = 1024;
+
+	/**
+	 * @param type
+	 *            the type of shape
+	 * @param dipToPixel
+	 *            the display density
+	 * @return a cleared shape element, either from the pool or new
+	 */
+	public static synchronized ShapeElement obtain(final ShapeType type,
+			final float dipToPixel) {
+		List<ShapeElement> pool = POOLS.get(type.ordinal());
+		int size = pool.size();
+
+		ShapeElement element;
+		if (size > 0) {
+			element = pool.remove(size - 1);
+			element.setDipToPixel(dipToPixel);
+		} else {
+			element = new ShapeElement(type, dipToPixel);
+		}
+		return element;
+	}
+
+	/**
+	 * Clears the given element and puts it back in the pool. The element must
+	 * not be used anymore by the caller.
+	 * 
+	 * @param element
+	 *            the element to release
+	 */
+	public static synchronized void release(final ShapeElement element) {
+		// always clear, to give the resources (images...) back
+		element.clear();
+
+		List<ShapeElement> pool = POOLS.get(element.getType().ordinal());
+		if (pool.size() < MAX_POOL_SIZE) {
+			pool.add(element);
+		}
+	}
+
+	/**
+	 * @param dipToPixel
+	 *            the display density
+	 * @return the (shared) emboss filter for the given density
+	 */
+	public static synchronized MaskFilter getEmbossFilter(
+			final float dipToPixel) {
+		if ((sEmbossFilter == null) || (sEmbossDensity != dipToPixel)) {
+			sEmbossFilter = new EmbossMaskFilter(new float[] { 1, 1, 1 },
+					0.8f, 3.0f, 1 * dipToPixel);
+			sEmbossDensity = dipToPixel;
+		}
+		return sEmbossFilter;
+	}
+
+	/**
+	 * @return the number of pooled elements (all types)
+	 */
+	public static synchronized int size() {
+		int size = 0;
+		for (List<ShapeElement> pool : POOLS) {
+			size += pool.size();
+		}
+		return size;
+	}
+
+	private static final List<List<ShapeElement>> POOLS;
+
+	static {
+		ShapeType[] types = ShapeType.values();
+		POOLS = new ArrayList<List<ShapeElement>>(types.length);
+		for (int i = 0; i < types.length; ++i) {
+			POOLS.add(new ArrayList<ShapeElement>());
+		}
+	}
+
+	private static MaskFilter sEmbossFilter;
+	private static float sEmbossDensity;
+
+	private ShapeElementPool() {
+	}
+}
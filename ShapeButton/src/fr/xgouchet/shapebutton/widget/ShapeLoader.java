@@ -0,0 +1,281 @@
+package fr.xgouchet.shapebutton.widget;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Xml;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeElement;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeGroup;
+
+/**
+ * Reads a shapes xml from a stream, a file or a buffer on a background
+ * thread, and hands the shapes to the {@link ShapeButton} on the UI thread in
+ * batches while reading, so that the first shapes are drawn before a large
+ * file has been read.
+ *
+ * Batches start small and grow, to show the first shapes quickly without
+ * posting too many messages for large files.
+ */
+final class ShapeLoader implements Runnable, ShapeButton.ShapeConsumer {
+
+	/** files larger than this are memory mapped instead of read */
+	public static final long MAP_THRESHOLD = 256 * 1024;
+
+	/** the size of the first batch */
+	public static final int FIRST_BATCH_SIZE = 16;
+	/** the maximum size of the batches */
+	public static final int MAX_BATCH_SIZE = 512;
+
+	/**
+	 * @param button
+	 *            the button to load the shapes into
+	 * @param input
+	 *            the stream to read (closed once read)
+	 */
+	public ShapeLoader(final ShapeButton button, final InputStream input) {
+		this(button, input, null, null);
+	}
+
+	/**
+	 * @param button
+	 *            the button to load the shapes into
+	 * @param file
+	 *            the file to read
+	 */
+	public ShapeLoader(final ShapeButton button, final File file) {
+		this(button, null, file, null);
+	}
+
+	/**
+	 * @param button
+	 *            the button to load the shapes into
+	 * @param buffer
+	 *            the buffer to read (from its position to its limit, the
+	 *            buffer itself is not modified)
+	 */
+	public ShapeLoader(final ShapeButton button, final ByteBuffer buffer) {
+		this(button, null, null, buffer.duplicate());
+	}
+
+	/**
+	 * Starts reading in the background
+	 */
+	public void start() {
+		mStart = System.nanoTime();
+		EXECUTOR.execute(this);
+	}
+
+	/**
+	 * Stops reading, the shapes read but not yet delivered are dropped. Must
+	 * be called on the UI thread.
+	 */
+	public void cancel() {
+		mCancelled = true;
+	}
+
+	/**
+	 * @return if this loader has been cancelled
+	 */
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	/**
+	 * Reads the shapes (on the background thread)
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		InputStream input = null;
+		Exception error = null;
+		try {
+			input = openInput();
+
+			XmlPullParser xpp = Xml.newPullParser();
+			xpp.setInput(input, null);
+			mButton.parseShapes(xpp, this);
+		} catch (Exception e) {
+			error = e;
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					Log.w(TAG, "Unable to close shapes input", e);
+				}
+			}
+		}
+
+		flush();
+
+		final Exception result = error;
+		mMainHandler.post(new Runnable() {
+			public void run() {
+				if (!mCancelled) {
+					mButton.onShapesLoaded(ShapeLoader.this, mShapes,
+							System.nanoTime() - mStart, result);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @see ShapeButton.ShapeConsumer#onGroup(ShapeGroup)
+	 */
+	public void onGroup(final ShapeGroup group) {
+		mPendingGroups.add(group);
+	}
+
+	/**
+	 * @see ShapeButton.ShapeConsumer#onShape(ShapeElement)
+	 */
+	public boolean onShape(final ShapeElement shape) {
+		mPendingShapes.add(shape);
+		mShapes++;
+
+		if (mPendingShapes.size() >= mBatchSize) {
+			flush();
+			mBatchSize = Math.min(mBatchSize * 2, MAX_BATCH_SIZE);
+		}
+
+		return !mCancelled;
+	}
+
+	/**
+	 * Hands the pending groups and shapes to the button (on the UI thread)
+	 */
+	private void flush() {
+		if (mPendingShapes.isEmpty() && mPendingGroups.isEmpty()) {
+			return;
+		}
+
+		final List<ShapeGroup> groups = mPendingGroups;
+		final List<ShapeElement> shapes = mPendingShapes;
+		mPendingGroups = new ArrayList<ShapeGroup>();
+		mPendingShapes = new ArrayList<ShapeElement>(mBatchSize * 2);
+
+		mMainHandler.post(new Runnable() {
+			public void run() {
+				if (mCancelled) {
+					final int count = shapes.size();
+					for (int i = 0; i < count; ++i) {
+						ShapeElementPool.release(shapes.get(i));
+					}
+				} else {
+					mButton.addShapes(groups, shapes);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return the stream to parse
+	 */
+	private InputStream openInput() throws IOException {
+		if (mInput != null) {
+			return mInput;
+		}
+
+		if (mBuffer != null) {
+			return new ByteBufferInputStream(mBuffer);
+		}
+
+		FileInputStream input = new FileInputStream(mFile);
+		if (mFile.length() < MAP_THRESHOLD) {
+			return new BufferedInputStream(input);
+		}
+
+		// the mapping stays valid once the channel is closed
+		FileChannel channel = input.getChannel();
+		try {
+			return new ByteBufferInputStream(channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * An input stream reading a byte buffer
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		ByteBufferInputStream(final ByteBuffer buffer) {
+			mBuffer = buffer;
+		}
+
+		public int read() {
+			if (!mBuffer.hasRemaining()) {
+				return -1;
+			}
+			return mBuffer.get() & 0xFF;
+		}
+
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (!mBuffer.hasRemaining()) {
+				return -1;
+			}
+
+			int count = Math.min(length, mBuffer.remaining());
+			mBuffer.get(bytes, offset, count);
+			return count;
+		}
+
+		public int available() {
+			return mBuffer.remaining();
+		}
+
+		final private ByteBuffer mBuffer;
+	}
+
+	private ShapeLoader(final ShapeButton button, final InputStream input,
+			final File file, final ByteBuffer buffer) {
+		mButton = button;
+		mInput = input;
+		mFile = file;
+		mBuffer = buffer;
+		mMainHandler = new Handler(Looper.getMainLooper());
+		mPendingGroups = new ArrayList<ShapeGroup>();
+		mPendingShapes = new ArrayList<ShapeElement>(FIRST_BATCH_SIZE);
+		mBatchSize = FIRST_BATCH_SIZE;
+	}
+
+	private static final String TAG = "SB";
+
+	private static final ExecutorService EXECUTOR = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "ShapeLoader");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+
+	final private ShapeButton mButton;
+	final private InputStream mInput;
+	final private File mFile;
+	final private ByteBuffer mBuffer;
+	final private Handler mMainHandler;
+
+	private volatile boolean mCancelled;
+	private long mStart;
+	private int mShapes, mBatchSize;
+	private List<ShapeGroup> mPendingGroups;
+	private List<ShapeElement> mPendingShapes;
+}
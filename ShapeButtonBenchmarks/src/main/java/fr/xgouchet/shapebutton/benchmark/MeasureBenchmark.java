@@ -0,0 +1,85 @@
+package fr.xgouchet.shapebutton.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.xgouchet.shapebutton.geometry.ShapeGeometry;
+import fr.xgouchet.shapebutton.geometry.ShapeGrid;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+
+/**
+ * The measure path : the needed size of every shape, and the bounds and
+ * spatial index rebuilt when the shapes change (ShapeButton#onMeasure and
+ * ShapeButton#updateIndex).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeasureBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int count;
+
+	@Setup
+	public void setUp() {
+		List<ShapeGeometry> shapes = ShapeFixtures.createShapes(count, 42);
+		mShapes = shapes.toArray(new ShapeGeometry[count]);
+		mBounds = new float[count * 4];
+		mGrid = new ShapeGrid();
+	}
+
+	/**
+	 * @return the size needed to display all the shapes
+	 */
+	@Benchmark
+	public long neededSize() {
+		int width = 0, height = 0;
+		for (ShapeGeometry shape : mShapes) {
+			width = Math.max(width, shape.getNeededWidth());
+			height = Math.max(height, shape.getNeededHeight());
+		}
+		return (((long) width) << 32) | height;
+	}
+
+	/**
+	 * @return the last bound computed
+	 */
+	@Benchmark
+	public float bounds() {
+		for (int i = 0; i < count; ++i) {
+			mShapes[i].getBounds(mBounds, i * 4);
+		}
+		return mBounds[(count * 4) - 1];
+	}
+
+	/**
+	 * @return the number of indexed shapes
+	 */
+	@Benchmark
+	public int boundsAndIndex() {
+		for (int i = 0; i < count; ++i) {
+			mShapes[i].getBounds(mBounds, i * 4);
+		}
+		mGrid.build(mBounds, count);
+		return mGrid.getCount();
+	}
+
+	private ShapeGeometry[] mShapes;
+	private float[] mBounds;
+	private ShapeGrid mGrid;
+}
@@ -0,0 +1,132 @@
+package fr.xgouchet.shapebutton.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.xgouchet.shapebutton.geometry.ShapeGeometry;
+import fr.xgouchet.shapebutton.geometry.ShapeGrid;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+
+/**
+ * The touch lookup path : the grid query for the candidates under a touch,
+ * then the hit test (contains) and the tolerant hit test (distance) on them,
+ * as done by ShapeButton#findShapeAt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TouchLookupBenchmark {
+
+	/** the number of touches replayed */
+	private static final int TOUCHES = 1024;
+
+	/** the touch tolerance (in pixels) */
+	private static final float RADIUS = 24;
+
+	@Param({ "10", "1000", "100000" })
+	public int count;
+
+	@Setup
+	public void setUp() {
+		List<ShapeGeometry> shapes = ShapeFixtures.createShapes(count, 42);
+		mShapes = shapes.toArray(new ShapeGeometry[count]);
+
+		float[] bounds = new float[count * 4];
+		for (int i = 0; i < count; ++i) {
+			mShapes[i].getBounds(bounds, i * 4);
+		}
+		mGrid = new ShapeGrid();
+		mGrid.build(bounds, count);
+		mCandidates = new int[count];
+
+		// touches spread on the whole area (some on shapes, some not)
+		final int side = ShapeFixtures.getSide(count);
+		Random random = new Random(7);
+		mTouches = new float[TOUCHES * 2];
+		for (int i = 0; i < mTouches.length; ++i) {
+			mTouches[i] = random.nextFloat() * side;
+		}
+	}
+
+	/**
+	 * @return the number of candidates under the next touch
+	 */
+	@Benchmark
+	public int query() {
+		final float x = nextX(), y = nextY();
+		return mGrid.query(x - RADIUS, y - RADIUS, x + RADIUS, y + RADIUS,
+				mCandidates);
+	}
+
+	/**
+	 * @return the topmost shape containing the next touch (or -1)
+	 */
+	@Benchmark
+	public int contains() {
+		final float x = nextX(), y = nextY();
+		final int candidates = mGrid.query(x, y, x, y, mCandidates);
+
+		int res = -1, index;
+		for (int i = 0; i < candidates; ++i) {
+			index = mCandidates[i];
+			if ((index > res) && mShapes[index].contains(x, y)) {
+				res = index;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return the nearest shape within the tolerance of the next touch (or
+	 *         -1)
+	 */
+	@Benchmark
+	public int distance() {
+		final float x = nextX(), y = nextY();
+		final int candidates = mGrid.query(x - RADIUS, y - RADIUS, x + RADIUS,
+				y + RADIUS, mCandidates);
+
+		int res = -1, index;
+		float best = RADIUS, distance;
+		for (int i = 0; i < candidates; ++i) {
+			index = mCandidates[i];
+			distance = mShapes[index].distance(x, y);
+			if ((distance < best) || ((distance == best) && (index > res))) {
+				best = distance;
+				res = index;
+			}
+		}
+		return res;
+	}
+
+	private float nextX() {
+		mTouch = (mTouch + 2) % mTouches.length;
+		return mTouches[mTouch];
+	}
+
+	private float nextY() {
+		return mTouches[mTouch + 1];
+	}
+
+	private ShapeGeometry[] mShapes;
+	private ShapeGrid mGrid;
+	private int[] mCandidates;
+	private float[] mTouches;
+	private int mTouch;
+}
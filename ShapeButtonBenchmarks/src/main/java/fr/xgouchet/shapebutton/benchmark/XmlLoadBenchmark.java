@@ -0,0 +1,109 @@
+package fr.xgouchet.shapebutton.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.kxml2.io.KXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import fr.xgouchet.shapebutton.geometry.GroupDefinition;
+import fr.xgouchet.shapebutton.geometry.ShapeDefinition;
+import fr.xgouchet.shapebutton.geometry.ShapeGeometry;
+import fr.xgouchet.shapebutton.geometry.ShapeXmlReader;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+
+/**
+ * The xml definition loading : parsing a shapes document with a portable pull
+ * parser (kxml2), building the geometries and sorting them by z order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlLoadBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int count;
+
+	@Setup
+	public void setUp() {
+		mXml = ShapeFixtures.createXml(count, 42);
+	}
+
+	/**
+	 * @return the number of shapes read
+	 */
+	@Benchmark
+	public int read() throws XmlPullParserException, IOException {
+		KXmlParser xpp = new KXmlParser();
+		xpp.setInput(new StringReader(mXml));
+
+		ShapeXmlReader reader = new ShapeXmlReader(2.0f);
+		return reader.read(xpp, new CountingHandler());
+	}
+
+	/**
+	 * @return the shapes read, sorted by z order
+	 */
+	@Benchmark
+	public List<ShapeGeometry> load() throws XmlPullParserException,
+			IOException {
+		KXmlParser xpp = new KXmlParser();
+		xpp.setInput(new StringReader(mXml));
+
+		final List<ShapeGeometry> shapes = new ArrayList<ShapeGeometry>(count);
+		ShapeXmlReader reader = new ShapeXmlReader(2.0f);
+		reader.read(xpp, new CountingHandler() {
+			@Override
+			public boolean onShape(final ShapeDefinition shape) {
+				ShapeGeometry geometry = new ShapeGeometry(shape.getType());
+				shape.applyTo(geometry);
+				shapes.add(geometry);
+				return true;
+			}
+		});
+
+		Collections.sort(shapes);
+		return shapes;
+	}
+
+	/**
+	 * Only counts the nodes read
+	 */
+	private static class CountingHandler implements ShapeXmlReader.Handler {
+		public void onGroupStart(final GroupDefinition group) {
+			mGroups++;
+		}
+
+		public void onGroupEnd() {
+		}
+
+		public boolean onShape(final ShapeDefinition shape) {
+			return true;
+		}
+
+		public void onUnknownTag(final String name) {
+		}
+
+		int mGroups;
+	}
+
+	private String mXml;
+}
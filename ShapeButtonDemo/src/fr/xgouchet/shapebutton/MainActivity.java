@@ -15,9 +15,14 @@ public class MainActivity extends ListActivity implements OnItemClickListener {
 	protected void onResume() {
 		super.onResume();
 
-		String[] data = getResources().getStringArray(R.array.sample_names);
+		String[] names = getResources().getStringArray(R.array.sample_names);
 		mXMLs = getResources().getStringArray(R.array.sample_xml);
 
+		// the xml samples, followed by the stress test
+		String[] data = new String[names.length + 1];
+		System.arraycopy(names, 0, data, 0, names.length);
+		data[names.length] = getString(R.string.stress_test);
+
 		ArrayAdapter<String> adapter = new ArrayAdapter<String>(this,
 				android.R.layout.simple_list_item_1, data);
 		setListAdapter(adapter);
@@ -31,6 +36,11 @@ public class MainActivity extends ListActivity implements OnItemClickListener {
 	public void onItemClick(AdapterView<?> parent, View view, int position,
 			long id) {
 
+		if (position >= mXMLs.length) {
+			startActivity(new Intent(this, StressTestActivity.class));
+			return;
+		}
+
 		int xmlId = getResources().getIdentifier(mXMLs[position], "xml",
 				getPackageName());
 
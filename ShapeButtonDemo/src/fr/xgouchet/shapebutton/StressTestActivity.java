@@ -0,0 +1,332 @@
+package fr.xgouchet.shapebutton;
+
+import java.util.Random;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.view.ViewGroup.LayoutParams;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.CompoundButton.OnCheckedChangeListener;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import fr.xgouchet.shapebutton.geometry.ShapeType;
+import fr.xgouchet.shapebutton.metrics.ShapeButtonMetrics;
+import fr.xgouchet.shapebutton.widget.ShapeButton;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeElement;
+
+/**
+ * Generates a large number of random shapes, and optionally keeps redrawing
+ * them, feeds them synthetic touches and toggles their enabled state, while
+ * displaying live performance statistics.
+ * 
+ * All the random values come from a fixed seed, so that a given shape count
+ * always produces the same scenario.
+ */
+public class StressTestActivity extends Activity implements OnClickListener,
+		OnCheckedChangeListener {
+
+	/**
+	 * Metrics also counting frames and janky frames
+	 */
+	private class StressMetrics extends ShapeButtonMetrics {
+
+		/**
+		 * @see ShapeButtonMetrics#onFrameDrawn(ShapeButton, int, int, long)
+		 */
+		public void onFrameDrawn(final ShapeButton view, final int drawn,
+				final int culled, final long duration) {
+			super.onFrameDrawn(view, drawn, culled, duration);
+
+			long now = System.nanoTime();
+			if (mAnimate.isChecked()) {
+				if ((mLastFrame > 0) && ((now - mLastFrame) > JANK_THRESHOLD_NS)) {
+					mJankyFrames++;
+				}
+				view.postInvalidate();
+			}
+			mLastFrame = now;
+			mFrames++;
+		}
+
+		/**
+		 * @see ShapeButtonMetrics#reset()
+		 */
+		public void reset() {
+			super.reset();
+			mFrames = 0;
+			mJankyFrames = 0;
+		}
+
+		private long mLastFrame;
+		private int mFrames, mJankyFrames;
+	}
+
+	/**
+	 * @see android.app.Activity#onCreate(android.os.Bundle)
+	 */
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.activity_stress);
+
+		mContainer = (FrameLayout) findViewById(R.id.shapeContainer);
+		mCountInput = (EditText) findViewById(R.id.shapeCount);
+		mStats = (TextView) findViewById(R.id.stats);
+		mAnimate = (CheckBox) findViewById(R.id.animate);
+		mTouchStorm = (CheckBox) findViewById(R.id.touchStorm);
+		mToggleStorm = (CheckBox) findViewById(R.id.toggleStorm);
+		mHardwareLayer = (CheckBox) findViewById(R.id.hardwareLayer);
+
+		findViewById(R.id.generate).setOnClickListener(this);
+		mAnimate.setOnCheckedChangeListener(this);
+		mHardwareLayer.setOnCheckedChangeListener(this);
+
+		mDensity = getResources().getDisplayMetrics().density;
+		mMetrics = new StressMetrics();
+		mHandler = new Handler();
+		mRandom = new Random(SEED);
+	}
+
+	/**
+	 * @see android.app.Activity#onResume()
+	 */
+	protected void onResume() {
+		super.onResume();
+		mLastStats = SystemClock.uptimeMillis();
+		mHandler.post(mTick);
+	}
+
+	/**
+	 * @see android.app.Activity#onPause()
+	 */
+	protected void onPause() {
+		super.onPause();
+		mHandler.removeCallbacks(mTick);
+	}
+
+	/**
+	 * @see android.view.View.OnClickListener#onClick(android.view.View)
+	 */
+	public void onClick(View v) {
+		generateShapes();
+	}
+
+	/**
+	 * @see android.widget.CompoundButton.OnCheckedChangeListener#onCheckedChanged(android.widget.CompoundButton,
+	 *      boolean)
+	 */
+	public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+		if (mShapeButton == null) {
+			return;
+		}
+
+		if (buttonView == mHardwareLayer) {
+			applyLayerType();
+		} else if (isChecked) {
+			mShapeButton.invalidate();
+		}
+	}
+
+	/**
+	 * Replaces the shapes of the button with random ones (the previous shapes
+	 * go back to the shared pool)
+	 */
+	private void generateShapes() {
+		int count;
+		try {
+			count = Integer.parseInt(mCountInput.getText().toString());
+		} catch (NumberFormatException e) {
+			count = DEFAULT_SHAPES;
+		}
+		count = Math.max(0, Math.min(count, MAX_SHAPES));
+
+		int width = Math.max(1, mContainer.getWidth());
+		int height = Math.max(1, mContainer.getHeight());
+		int minSize = (int) (MIN_SHAPE_SIZE_DP * mDensity);
+		int maxSize = (int) (MAX_SHAPE_SIZE_DP * mDensity);
+
+		ShapeButton button = mShapeButton;
+		if (button == null) {
+			button = new ShapeButton(this);
+			button.setMetricsListener(mMetrics);
+			mContainer.addView(button, new FrameLayout.LayoutParams(
+					LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+		} else {
+			button.reset();
+		}
+
+		Random random = new Random(SEED);
+		float[] hsv = new float[] { 0, 0, 0 };
+		ShapeType type;
+		ShapeElement shape;
+		int w, h, start;
+		for (int i = 0; i < count; ++i) {
+			type = SHAPE_TYPES[random.nextInt(SHAPE_TYPES.length)];
+			w = minSize + random.nextInt(maxSize - minSize);
+			h = minSize + random.nextInt(maxSize - minSize);
+
+			shape = button.createShape(type);
+			shape.setId("shape " + i);
+			shape.setPosition(random.nextInt(Math.max(1, width - w)),
+					random.nextInt(Math.max(1, height - h)), random.nextInt(4));
+			shape.setSize(w, h);
+			shape.setAngle(random.nextInt(360));
+
+			if (type == ShapeType.arc) {
+				start = random.nextInt(360) - 180;
+				shape.setRange(start, start + 30 + random.nextInt(300));
+				if (random.nextBoolean()) {
+					shape.setThickness(Math.min(w, h) / 4);
+				}
+			}
+
+			hsv[0] = random.nextFloat() * 360;
+			hsv[1] = 0.3f;
+			hsv[2] = 0.8f;
+			shape.setBaseColor(Color.HSVToColor(hsv));
+			hsv[1] = 0.8f;
+			shape.setAccentColor(Color.HSVToColor(hsv));
+
+			button.addShape(shape);
+		}
+
+		mShapeButton = button;
+		mShapeCount = count;
+		mRandom = new Random(SEED);
+		applyLayerType();
+		mMetrics.reset();
+	}
+
+	/**
+	 * Switches the button between a software and a hardware layer
+	 */
+	private void applyLayerType() {
+		mShapeButton.setLayerType(
+				mHardwareLayer.isChecked() ? View.LAYER_TYPE_HARDWARE
+						: View.LAYER_TYPE_SOFTWARE, null);
+	}
+
+	/**
+	 * Sends random tap gestures (down, move, up) to the button
+	 */
+	private void dispatchTouches() {
+		long now = SystemClock.uptimeMillis();
+		float x, y, slide = TOUCH_SLIDE_DP * mDensity;
+		MotionEvent event;
+
+		for (int i = 0; i < TOUCHES_PER_TICK; ++i) {
+			x = mRandom.nextFloat() * mShapeButton.getWidth();
+			y = mRandom.nextFloat() * mShapeButton.getHeight();
+
+			event = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y,
+					0);
+			mShapeButton.dispatchTouchEvent(event);
+			event.setAction(MotionEvent.ACTION_MOVE);
+			event.setLocation(x + slide, y + slide);
+			mShapeButton.dispatchTouchEvent(event);
+			event.setAction(MotionEvent.ACTION_UP);
+			mShapeButton.dispatchTouchEvent(event);
+			event.recycle();
+		}
+	}
+
+	/**
+	 * Enables or disables random shapes
+	 */
+	private void toggleShapes() {
+		if (mShapeCount == 0) {
+			return;
+		}
+
+		for (int i = 0; i < TOGGLES_PER_TICK; ++i) {
+			mShapeButton.setShapeEnabled(
+					"shape " + mRandom.nextInt(mShapeCount),
+					mRandom.nextBoolean());
+		}
+	}
+
+	/**
+	 * Displays the statistics collected since the last update, then clears
+	 * them
+	 */
+	private void updateStats(final long elapsed) {
+		Runtime runtime = Runtime.getRuntime();
+		long heap = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+		long maxHeap = runtime.maxMemory() / 1024;
+
+		float fps = (mMetrics.mFrames * 1000.0f) / elapsed;
+
+		mStats.setText(getString(R.string.stress_stats, mShapeCount, fps,
+				mMetrics.mJankyFrames,
+				mMetrics.getDrawTime().getPercentile(50) / NS_TO_MS,
+				mMetrics.getDrawTime().getPercentile(90) / NS_TO_MS,
+				(long) mMetrics.getDrawnShapes().getMean(),
+				(long) mMetrics.getCulledShapes().getMean(), mMetrics
+						.getHitTestTime().getPercentile(50) / NS_TO_MS,
+				mMetrics.getHitTestTime().getPercentile(99) / NS_TO_MS,
+				mMetrics.getHitTestCandidates().getMean(), heap, maxHeap));
+
+		mMetrics.reset();
+	}
+
+	/** Runs the storms and refreshes the statistics */
+	private final Runnable mTick = new Runnable() {
+		public void run() {
+			if (mShapeButton != null) {
+				if (mTouchStorm.isChecked()) {
+					dispatchTouches();
+				}
+				if (mToggleStorm.isChecked()) {
+					toggleShapes();
+				}
+			}
+
+			long now = SystemClock.uptimeMillis();
+			if ((now - mLastStats) >= STATS_INTERVAL_MS) {
+				updateStats(now - mLastStats);
+				mLastStats = now;
+			}
+
+			mHandler.postDelayed(this, TICK_MS);
+		}
+	};
+
+	/** the generated types (path shapes need path data) */
+	private static final ShapeType[] SHAPE_TYPES = { ShapeType.rect,
+			ShapeType.oval, ShapeType.triangle, ShapeType.arc };
+
+	private static final long SEED = 42;
+	private static final int DEFAULT_SHAPES = 1000;
+	private static final int MAX_SHAPES = 50000;
+	private static final int MIN_SHAPE_SIZE_DP = 8;
+	private static final int MAX_SHAPE_SIZE_DP = 48;
+	private static final int TOUCH_SLIDE_DP = 4;
+	private static final int TOUCHES_PER_TICK = 5;
+	private static final int TOGGLES_PER_TICK = 20;
+
+	private static final long TICK_MS = 16;
+	private static final long STATS_INTERVAL_MS = 500;
+	/** a frame taking more than one and a half vsync is janky */
+	private static final long JANK_THRESHOLD_NS = 25000000L;
+	private static final double NS_TO_MS = 1000000.0;
+
+	private FrameLayout mContainer;
+	private EditText mCountInput;
+	private TextView mStats;
+	private CheckBox mAnimate, mTouchStorm, mToggleStorm, mHardwareLayer;
+
+	private ShapeButton mShapeButton;
+	private int mShapeCount;
+	private StressMetrics mMetrics;
+	private Handler mHandler;
+	private Random mRandom;
+	private float mDensity;
+	private long mLastStats;
+}
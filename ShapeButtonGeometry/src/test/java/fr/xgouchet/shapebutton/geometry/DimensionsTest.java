@@ -0,0 +1,73 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import fr.xgouchet.shapebutton.test.Allocations;
+
+public class DimensionsTest {
+
+	@Test
+	public void convertsTheUnits() {
+		assertEquals(0, Dimensions.getPixelSize(null, 2));
+		assertEquals(0, Dimensions.getPixelSize("", 2));
+		assertEquals(12, Dimensions.getPixelSize("12", 2));
+		assertEquals(12, Dimensions.getPixelSize("12px", 2));
+		assertEquals(24, Dimensions.getPixelSize("12dp", 2));
+		assertEquals(36, Dimensions.getPixelSize("12sp", 2, 3));
+	}
+
+	@Test
+	public void scalesSpAsDpWithoutScaledDensity() {
+		assertEquals(32, Dimensions.getPixelSize("16sp", 2));
+	}
+
+	@Test
+	public void roundsToTheNearestPixel() {
+		assertEquals(17, Dimensions.getPixelSize("11dp", 1.5f));
+		assertEquals(21, Dimensions.getPixelSize("16sp", 1.5f, 1.3f));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void rejectsUnknownUnits() {
+		Dimensions.getPixelSize("12in", 2);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void rejectsUnitsWithoutValue() {
+		Dimensions.getPixelSize("-dp", 2);
+	}
+
+	@Test
+	public void parsesDecimals() {
+		assertEquals(2, Dimensions.parseFloat("2"), 0);
+		assertEquals(-1.5f, Dimensions.parseFloat("-1.5"), 0);
+		assertEquals(0.5f, Dimensions.parseFloat("+.5"), 0);
+		assertEquals(0.1f, Dimensions.parseFloat("0.1"), 0);
+		assertEquals(12.345f, Dimensions.parseFloat("12.345"), 0);
+		assertEquals(150, Dimensions.parseFloat("1.5e2"), 0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void rejectsInvalidDecimals() {
+		Dimensions.parseFloat("-.");
+	}
+
+	@Test
+	public void parsingDoesNotAllocate() {
+		long allocated = Allocations.measure(new Runnable() {
+			public void run() {
+				mSink += Dimensions.getPixelSize("-12dp", 2);
+				mSink += Dimensions.getPixelSize("16sp", 2, 3);
+				mSink += Dimensions.getPixelSize("7px", 2);
+				mSink += Dimensions.parseFloat("-1.25");
+				mSink += Colors.parseColor("#80FF0000");
+				mSink += Colors.parseColor("red");
+			}
+		});
+		assertEquals(0, allocated);
+	}
+
+	private float mSink;
+}
@@ -0,0 +1,142 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class PathDataTest {
+
+	@Test
+	public void relativeCommandsAreMadeAbsolute() {
+		assertSamePath("M10,10 L20,10 L20,20 L10,20 Z M30,30 L40,30 Z",
+				"m10,10 l10,0 l0,10 h-10 z m20,20 h10 z");
+		assertSamePath("M0,0 C10,0 20,10 20,20 S30,40 40,40 Q50,40 50,50 T60,60",
+				"m0,0 c10,0 20,10 20,20 s10,20 20,20 q10,0 10,10 t10,10");
+	}
+
+	@Test
+	public void coordinatesAfterAMovetoAreLinetos() {
+		assertSamePath("M0,0 L10,0 L10,10 Z", "M0,0 10,0 10,10 Z");
+		assertSamePath("M5,5 L15,5 L15,15 Z", "m5,5 10,0 0,10 z");
+	}
+
+	@Test
+	public void readsCompactNumbers() {
+		assertSamePath("M0,0 L10,0 L10,10 L0.5,0.5 Z", "M0-0L10,0L1e1 10L.5.5z");
+		assertSamePath("M0,0 L-5,-2.5 L+3,1E-1 Z", "M0 0L-5-2.5 3 .1e0Z");
+		assertSamePath("M0,0 A10,10 0 0,1 20,0 Z", "M0,0A10 10 0 0120 0z");
+	}
+
+	@Test
+	public void arcsFollowTheEllipse() {
+		PathData circle = PathData
+				.obtain("M0,50 A50,50 0 0,1 100,50 A50,50 0 0,1 0,50 Z");
+		assertEquals(100, circle.getWidth(), 1);
+		assertEquals(100, circle.getHeight(), 1);
+		assertTrue(circle.contains(50, 50, 100, 100));
+		assertTrue(circle.contains(50, 2, 100, 100));
+		assertFalse(circle.contains(5, 5, 100, 100));
+		assertFalse(circle.contains(95, 95, 100, 100));
+
+		// the large arc flag picks the long way around
+		PathData small = PathData.obtain("M0,0 A50,50 0 0,1 50,50 Z");
+		PathData large = PathData.obtain("M0,0 A50,50 0 1,1 50,50 Z");
+		assertTrue(large.getWidth() > small.getWidth() * 1.5f);
+
+		// radii too small to join the points are scaled up to a half circle
+		PathData half = PathData.obtain("M0,0 A1,1 0 0,1 100,0 Z");
+		assertEquals(100, half.getWidth(), 1);
+		assertEquals(50, half.getHeight(), 1);
+	}
+
+	@Test
+	public void rejectsMalformedData() {
+		assertMalformed("10,10");
+		assertMalformed("M0,0 L10");
+		assertMalformed("M0,0 L10,10 X");
+		assertMalformed("M0,0 A10,10 0 2,1 5,5");
+		assertMalformed("M0,0 A10,10 0 1");
+		assertMalformed("M0,0 L1e,2");
+		assertMalformed("M0,0 Z 10,10");
+	}
+
+	@Test
+	public void containsUsesTheNonZeroWindingRule() {
+		// same direction : the inner square is filled twice
+		PathData same = PathData.obtain("M0,0 L100,0 L100,100 L0,100 Z "
+				+ "M25,25 L75,25 L75,75 L25,75 Z");
+		assertTrue(same.contains(50, 50, 100, 100));
+		assertTrue(same.contains(10, 10, 100, 100));
+
+		// opposite direction : the inner square is a hole
+		PathData hole = PathData.obtain("M0,0 L100,0 L100,100 L0,100 Z "
+				+ "M25,25 L25,75 L75,75 L75,25 Z");
+		assertFalse(hole.contains(50, 50, 100, 100));
+		assertTrue(hole.contains(10, 10, 100, 100));
+		assertFalse(hole.contains(150, 50, 100, 100));
+	}
+
+	@Test
+	public void containsScalesThePathBounds() {
+		PathData square = PathData.obtain("M10,10 L20,10 L20,20 L10,20 Z");
+		assertTrue(square.contains(190, 90, 200, 100));
+		assertFalse(square.contains(210, 90, 200, 100));
+
+		// an empty path has no scale, and contains nothing
+		PathData line = PathData.obtain("M0,0 L10,0");
+		assertFalse(line.contains(5, 0, 10, 10));
+	}
+
+	private static void assertSamePath(final String expected,
+			final String actual) {
+		PathData data = PathData.obtain(expected);
+		assertEquals(actual, record(data), record(PathData.obtain(actual)));
+	}
+
+	private static void assertMalformed(final String d) {
+		try {
+			PathData.obtain(d);
+			fail("accepted " + d);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @return the commands of the path, at its own size
+	 */
+	private static String record(final PathData data) {
+		final StringBuilder out = new StringBuilder();
+		data.replay(new PathData.PathSink() {
+			public void moveTo(final float x, final float y) {
+				out.append("M").append(x).append(',').append(y).append(' ');
+			}
+
+			public void lineTo(final float x, final float y) {
+				out.append("L").append(x).append(',').append(y).append(' ');
+			}
+
+			public void quadTo(final float x1, final float y1,
+					final float x2, final float y2) {
+				out.append("Q").append(x1).append(',').append(y1).append(' ')
+						.append(x2).append(',').append(y2).append(' ');
+			}
+
+			public void cubicTo(final float x1, final float y1,
+					final float x2, final float y2, final float x3,
+					final float y3) {
+				out.append("C").append(x1).append(',').append(y1).append(' ')
+						.append(x2).append(',').append(y2).append(' ')
+						.append(x3).append(',').append(y3).append(' ');
+			}
+
+			public void close() {
+				out.append("Z ");
+			}
+		}, data.getWidth(), data.getHeight());
+		return out.toString();
+	}
+}
@@ -0,0 +1,117 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fr.xgouchet.shapebutton.test.Allocations;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+
+public class ShapeGeometryTest {
+
+	@Test
+	public void containsTheCenterOfFilledShapes() {
+		for (ShapeType type : ShapeType.values()) {
+			ShapeGeometry shape = ShapeFixtures.createShape(type);
+			if (type == ShapeType.arc) {
+				assertFalse(type.name(), shape.contains(150, 130));
+			} else {
+				assertTrue(type.name(), shape.contains(150, 130));
+			}
+			assertFalse(type.name(), shape.contains(0, 0));
+		}
+	}
+
+	@Test
+	public void distanceIsZeroInsideAndGrowsOutside() {
+		for (ShapeType type : ShapeType.values()) {
+			ShapeGeometry shape = ShapeFixtures.createShape(type);
+			if (type != ShapeType.arc) {
+				assertEquals(type.name(), 0, shape.distance(150, 130), 0);
+			}
+
+			float near = shape.distance(150, -50);
+			float far = shape.distance(150, -150);
+			assertTrue(type.name(), near > 0);
+			assertTrue(type.name(), far > near);
+		}
+	}
+
+	@Test
+	public void unionExtendsTheBoundsWithARotatedRect() {
+		ShapeGeometry shape = new ShapeGeometry(ShapeType.rect);
+		shape.setPosition(100, 100);
+		shape.setSize(100, 50);
+
+		float[] bounds = new float[4];
+		shape.getBounds(bounds, 0);
+		shape.union(bounds, 0, 50, 25, 80, 10);
+		assertEquals(70, bounds[0], 0.001f);
+		assertEquals(100, bounds[1], 0.001f);
+		assertEquals(230, bounds[2], 0.001f);
+		assertEquals(150, bounds[3], 0.001f);
+
+		// quarter turn : the rect sticks out vertically, around the center
+		shape.setAngle(90);
+		shape.getBounds(bounds, 0);
+		shape.union(bounds, 0, 50, 25, 80, 10);
+		assertEquals(125, bounds[0], 0.001f);
+		assertEquals(45, bounds[1], 0.001f);
+		assertEquals(175, bounds[2], 0.001f);
+		assertEquals(205, bounds[3], 0.001f);
+
+		// off center : the rect center turns with the shape (right edge to
+		// bottom edge)
+		shape.getBounds(bounds, 0);
+		shape.union(bounds, 0, 100, 25, 1, 1);
+		assertEquals(125, bounds[0], 0.001f);
+		assertEquals(75, bounds[1], 0.001f);
+		assertEquals(175, bounds[2], 0.001f);
+		assertEquals(176, bounds[3], 0.001f);
+	}
+
+	@Test
+	public void containsDoesNotAllocate() {
+		for (ShapeType type : ShapeType.values()) {
+			final ShapeGeometry shape = ShapeFixtures.createShape(type);
+			long allocated = Allocations.measure(new Runnable() {
+				public void run() {
+					int hits = 0;
+					for (int x = 0; x < 300; x += 5) {
+						for (int y = 0; y < 300; y += 5) {
+							if (shape.contains(x, y)) {
+								hits++;
+							}
+						}
+					}
+					mSink += hits;
+				}
+			});
+			assertEquals(type.name(), 0, allocated);
+		}
+	}
+
+	@Test
+	public void distanceDoesNotAllocate() {
+		for (ShapeType type : ShapeType.values()) {
+			final ShapeGeometry shape = ShapeFixtures.createShape(type);
+			long allocated = Allocations.measure(new Runnable() {
+				public void run() {
+					float sum = 0;
+					for (int x = 0; x < 300; x += 5) {
+						for (int y = 0; y < 300; y += 5) {
+							sum += shape.distance(x, y);
+						}
+					}
+					mSink += (int) sum;
+				}
+			});
+			assertEquals(type.name(), 0, allocated);
+		}
+	}
+
+	/** keeps the results alive */
+	private int mSink;
+}
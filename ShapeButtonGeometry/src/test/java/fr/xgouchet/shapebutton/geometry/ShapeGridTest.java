@@ -0,0 +1,81 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.xgouchet.shapebutton.test.Allocations;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+
+public class ShapeGridTest {
+
+	private static final int COUNT = 1000;
+
+	@Before
+	public void setUp() {
+		List<ShapeGeometry> shapes = ShapeFixtures.createShapes(COUNT, 42);
+		mBounds = new float[COUNT * 4];
+		for (int i = 0; i < COUNT; ++i) {
+			shapes.get(i).getBounds(mBounds, i * 4);
+		}
+
+		mGrid = new ShapeGrid();
+		mGrid.build(mBounds, COUNT);
+		mResult = new int[COUNT];
+		mSide = ShapeFixtures.getSide(COUNT);
+	}
+
+	@Test
+	public void queryFindsTheIntersectingBounds() {
+		Random random = new Random(7);
+		int[] expected = new int[COUNT];
+		for (int n = 0; n < 500; ++n) {
+			float x = random.nextFloat() * mSide, y = random.nextFloat() * mSide;
+			float r = random.nextFloat() * 50;
+
+			int found = mGrid.query(x - r, y - r, x + r, y + r, mResult);
+			int count = 0;
+			for (int i = 0; i < COUNT; ++i) {
+				if ((mBounds[i * 4] <= x + r) && (mBounds[i * 4 + 2] >= x - r)
+						&& (mBounds[i * 4 + 1] <= y + r)
+						&& (mBounds[i * 4 + 3] >= y - r)) {
+					expected[count++] = i;
+				}
+			}
+
+			Arrays.sort(mResult, 0, found);
+			assertEquals(count, found);
+			for (int i = 0; i < count; ++i) {
+				assertEquals(expected[i], mResult[i]);
+			}
+		}
+	}
+
+	@Test
+	public void queryDoesNotAllocate() {
+		long allocated = Allocations.measure(new Runnable() {
+			public void run() {
+				int found = 0;
+				for (int x = 0; x < mSide; x += 20) {
+					for (int y = 0; y < mSide; y += 20) {
+						found += mGrid.query(x - 24, y - 24, x + 24, y + 24,
+								mResult);
+					}
+				}
+				mSink += found;
+			}
+		});
+		assertEquals(0, allocated);
+	}
+
+	private float[] mBounds;
+	private ShapeGrid mGrid;
+	private int[] mResult;
+	private int mSide;
+	private int mSink;
+}
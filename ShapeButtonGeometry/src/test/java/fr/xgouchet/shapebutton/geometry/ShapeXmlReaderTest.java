@@ -0,0 +1,188 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+
+public class ShapeXmlReaderTest {
+
+	private static final String XML = "<shapes>"
+			+ "<group id=\"round\" x=\"-10px\" y=\"10dp\" angle=\"15\" scale=\"2\" pivotX=\"5dp\">"
+			+ "<rect id=\"a\" x=\"10dp\" y=\"20\" z=\"3\" width=\"30dp\" height=\"40dp\" angle=\"45\""
+			+ " base=\"#336699\" accent=\"red\" label=\"A\" labelSize=\"12dp\" labelStyle=\"bold\" src=\"@drawable/icon\"/>"
+			+ "</group>"
+			+ "<arc start=\"10\" end=\"200\" thickness=\"4dp\" labelColor=\"#80FF0000\"/>"
+			+ "<star/>"
+			+ "<path d=\"M0,0 L10,0 L10,10 Z\"/>"
+			+ "</shapes>";
+
+	@Test
+	public void readsShapesAndGroupsInDocumentOrder() throws Exception {
+		final List<String> events = new ArrayList<String>();
+		int shapes = read(XML, new ShapeXmlReader.Handler() {
+			public void onGroupStart(final GroupDefinition group) {
+				events.add("group " + group.getId());
+				assertEquals(-10, group.getX());
+				assertEquals(20, group.getY());
+				assertEquals(15, group.getAngle(), 0);
+				assertEquals(2, group.getScaleX(), 0);
+				assertEquals(2, group.getScaleY(), 0);
+				assertEquals(10, group.getPivotX(), 0);
+				assertEquals(0, group.getPivotY(), 0);
+			}
+
+			public void onGroupEnd() {
+				events.add("end");
+			}
+
+			public boolean onShape(final ShapeDefinition shape) {
+				events.add(shape.getType().name());
+				if (shape.getType() == ShapeType.rect) {
+					assertEquals("a", shape.getId());
+					assertEquals(20, shape.getX());
+					assertEquals(20, shape.getY());
+					assertEquals(3, shape.getZOrder());
+					assertEquals(60, shape.getWidth());
+					assertEquals(80, shape.getHeight());
+					assertEquals(45, shape.getAngle());
+					assertTrue(shape.hasBaseColor());
+					assertEquals(0xFF336699, shape.getBaseColor());
+					assertTrue(shape.hasAccentColor());
+					assertEquals(0xFFFF0000, shape.getAccentColor());
+					assertEquals("A", shape.getLabel());
+					assertTrue(shape.hasLabelSize());
+					assertEquals(24, shape.getLabelSize(), 0);
+					assertEquals("bold", shape.getLabelStyle());
+					assertEquals("@drawable/icon", shape.getImage());
+				} else if (shape.getType() == ShapeType.arc) {
+					// the reused definition is reset between shapes
+					assertNull(shape.getId());
+					assertFalse(shape.hasBaseColor());
+					assertFalse(shape.hasLabelSize());
+					assertEquals(10, shape.getStart());
+					assertEquals(200, shape.getEnd());
+					assertEquals(8, shape.getThickness());
+					assertTrue(shape.hasLabelColor());
+					assertEquals(0x80FF0000, shape.getLabelColor());
+				} else {
+					assertEquals("M0,0 L10,0 L10,10 Z", shape.getPathData());
+				}
+				return true;
+			}
+
+			public void onUnknownTag(final String name) {
+				events.add("unknown " + name);
+			}
+		});
+
+		assertEquals(3, shapes);
+		assertEquals("[group round, rect, end, arc, unknown star, path]",
+				events.toString());
+	}
+
+	@Test
+	public void stopsWhenTheHandlerAsks() throws Exception {
+		int shapes = read(XML, new CountingHandler() {
+			@Override
+			public boolean onShape(final ShapeDefinition shape) {
+				return false;
+			}
+		});
+		assertEquals(1, shapes);
+	}
+
+	@Test
+	public void appliesTheGeometry() throws Exception {
+		final List<ShapeGeometry> geometries = new ArrayList<ShapeGeometry>();
+		read(XML, new CountingHandler() {
+			@Override
+			public boolean onShape(final ShapeDefinition shape) {
+				ShapeGeometry geometry = new ShapeGeometry(shape.getType());
+				shape.applyTo(geometry);
+				geometries.add(geometry);
+				return true;
+			}
+		});
+
+		assertEquals(20, geometries.get(0).getX());
+		assertEquals(60, geometries.get(0).getWidth());
+		assertEquals(8, geometries.get(1).getThickness());
+		assertEquals(10, geometries.get(2).getPathData().getWidth(), 0);
+	}
+
+	@Test
+	public void readsLabelSizesInSp() throws Exception {
+		KXmlParser xpp = new KXmlParser();
+		xpp.setInput(new StringReader(
+				"<shapes><rect labelSize=\"16sp\"/></shapes>"));
+		new ShapeXmlReader(2.0f, 2.5f).read(xpp, new CountingHandler() {
+			@Override
+			public boolean onShape(final ShapeDefinition shape) {
+				assertEquals(40, shape.getLabelSize(), 0);
+				return true;
+			}
+		});
+	}
+
+	@Test
+	public void sizesPathsFromTheirBounds() throws Exception {
+		final List<String> sizes = new ArrayList<String>();
+		read("<shapes><path d=\"M10,10 L30,10 L30,20 Z\"/>"
+				+ "<path width=\"10dp\" d=\"M10,10 L30,10 L30,20 Z\"/>"
+				+ "<path height=\"5dp\" d=\"M10,10 L30,10 L30,20 Z\"/>"
+				+ "<path width=\"4\" height=\"6\" d=\"M0,0 L1,1 Z\"/>"
+				+ "<path d=\"M0,0 L10\"/></shapes>", new CountingHandler() {
+			@Override
+			public boolean onShape(final ShapeDefinition shape) {
+				sizes.add(shape.getWidth() + "x" + shape.getHeight());
+				return true;
+			}
+		});
+
+		// in dp when both are missing, else with the path aspect ratio
+		assertEquals("[40x20, 20x10, 20x10, 4x6, 0x0]", sizes.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownColors() throws Exception {
+		read("<shapes><rect base=\"notacolor\"/></shapes>",
+				new CountingHandler());
+	}
+
+	static int read(final String xml, final ShapeXmlReader.Handler handler)
+			throws Exception {
+		KXmlParser xpp = new KXmlParser();
+		xpp.setInput(new StringReader(xml));
+		return new ShapeXmlReader(2.0f).read(xpp, handler);
+	}
+
+	/**
+	 * Accepts all the nodes
+	 */
+	static class CountingHandler implements ShapeXmlReader.Handler {
+		public void onGroupStart(final GroupDefinition group) {
+			mGroups++;
+		}
+
+		public void onGroupEnd() {
+		}
+
+		public boolean onShape(final ShapeDefinition shape) {
+			mShapes++;
+			return true;
+		}
+
+		public void onUnknownTag(final String name) {
+		}
+
+		int mGroups, mShapes;
+	}
+}
@@ -0,0 +1,70 @@
+package fr.xgouchet.shapebutton.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+
+/**
+ * Coarse time budgets on the parse and measure paths, at fixed shape counts.
+ * The budgets are about ten times the JMH results on a desktop JVM, so they
+ * only catch complexity regressions (eg : a quadratic insertion), not small
+ * slowdowns; use the benchmarks for those.
+ */
+public class TimeBudgetTest {
+
+	/** the best of this many runs is kept */
+	private static final int RUNS = 5;
+
+	@Test
+	public void parse10kShapesWithin500ms() throws Exception {
+		final String xml = ShapeFixtures.createXml(10000, 42);
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; ++i) {
+			ShapeXmlReaderTest.CountingHandler handler = new ShapeXmlReaderTest.CountingHandler();
+			long start = System.nanoTime();
+			ShapeXmlReaderTest.read(xml, handler);
+			best = Math.min(best, System.nanoTime() - start);
+			assertEquals(10000, handler.mShapes);
+		}
+
+		assertBudget("parse", best, 500);
+	}
+
+	@Test
+	public void measure100kShapesWithin250ms() {
+		final int count = 100000;
+		final List<ShapeGeometry> shapes = ShapeFixtures.createShapes(count, 42);
+		final float[] bounds = new float[count * 4];
+		final ShapeGrid grid = new ShapeGrid();
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; ++i) {
+			long start = System.nanoTime();
+			int width = 0, height = 0;
+			for (int s = 0; s < count; ++s) {
+				ShapeGeometry shape = shapes.get(s);
+				width = Math.max(width, shape.getNeededWidth());
+				height = Math.max(height, shape.getNeededHeight());
+				shape.getBounds(bounds, s * 4);
+			}
+			grid.build(bounds, count);
+			best = Math.min(best, System.nanoTime() - start);
+			assertTrue((width > 0) && (height > 0));
+		}
+
+		assertBudget("measure", best, 250);
+	}
+
+	private static void assertBudget(final String name, final long nanos,
+			final long budgetMs) {
+		long ms = nanos / 1000000;
+		assertTrue(name + " took " + ms + "ms (budget " + budgetMs + "ms)",
+				ms <= budgetMs);
+	}
+}
@@ -0,0 +1,41 @@
+package fr.xgouchet.shapebutton.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import fr.xgouchet.shapebutton.test.Allocations;
+
+public class HistogramTest {
+
+	@Test
+	public void recordCountsInPowerOfTwoBuckets() {
+		Histogram histogram = new Histogram("test", 8);
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(3);
+		histogram.record(1000);
+
+		assertEquals(4, histogram.getCount());
+		assertEquals(1004, histogram.getSum());
+		assertEquals(0, histogram.getMin());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(1, histogram.getBucketCount(0));
+		assertEquals(1, histogram.getBucketCount(1));
+		assertEquals(1, histogram.getBucketCount(2));
+		assertEquals(1, histogram.getBucketCount(7));
+	}
+
+	@Test
+	public void recordDoesNotAllocate() {
+		final Histogram histogram = new Histogram("test");
+		long allocated = Allocations.measure(new Runnable() {
+			public void run() {
+				for (long v = 1; v < 100000; v += 7) {
+					histogram.record(v * v);
+				}
+			}
+		});
+		assertEquals(0, allocated);
+	}
+}
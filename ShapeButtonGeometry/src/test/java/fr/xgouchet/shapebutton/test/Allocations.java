@@ -0,0 +1,53 @@
+package fr.xgouchet.shapebutton.test;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated by the current thread (HotSpot only).
+ */
+public final class Allocations {
+
+	/**
+	 * @return the bytes allocated so far by the current thread
+	 */
+	public static long getAllocatedBytes() {
+		return BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Runs the given task until it is compiled, then measures the bytes
+	 * allocated by another run
+	 * 
+	 * @param task
+	 *            the task
+	 * @return the bytes allocated by the measured run, minus the cost of the
+	 *         measure itself
+	 */
+	public static long measure(final Runnable task) {
+		for (int i = 0; i < WARMUP_RUNS; ++i) {
+			task.run();
+		}
+
+		// the cost of reading the counter
+		long start = getAllocatedBytes();
+		long overhead = getAllocatedBytes() - start;
+
+		start = getAllocatedBytes();
+		task.run();
+		return Math.max(0, getAllocatedBytes() - start - overhead);
+	}
+
+	private Allocations() {
+	}
+
+	/** enough runs for the C2 compilation of the hot loops */
+	private static final int WARMUP_RUNS = 200;
+
+	private static final ThreadMXBean BEAN = (ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+	static {
+		BEAN.setThreadAllocatedMemoryEnabled(true);
+	}
+}
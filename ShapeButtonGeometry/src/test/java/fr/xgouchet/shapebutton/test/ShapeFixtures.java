@@ -0,0 +1,124 @@
+package fr.xgouchet.shapebutton.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import fr.xgouchet.shapebutton.geometry.PathData;
+import fr.xgouchet.shapebutton.geometry.ShapeGeometry;
+import fr.xgouchet.shapebutton.geometry.ShapeType;
+
+/**
+ * Generates reproducible shape sets, spread on a square whose area grows with
+ * the shape count
+ */
+public final class ShapeFixtures {
+
+	/** the path used for the path shapes */
+	public static final String HEART = "M50,90 C20,70 0,50 0,30 A25,25 0 0,1 50,20 A25,25 0 0,1 100,30 C100,50 80,70 50,90 Z";
+
+	/**
+	 * @param count
+	 *            the number of shapes
+	 * @return the side of the square holding the shapes
+	 */
+	public static int getSide(final int count) {
+		return (int) Math.ceil(Math.sqrt(count)) * 60;
+	}
+
+	/**
+	 * @param type
+	 *            the shape type
+	 * @return a shape of the given type, 100 x 60 at (100, 100), rotated
+	 */
+	public static ShapeGeometry createShape(final ShapeType type) {
+		ShapeGeometry shape = new ShapeGeometry(type);
+		shape.setPosition(100, 100);
+		shape.setSize(100, 60);
+		shape.setAngle(30);
+		shape.setRange(45, 270);
+		shape.setThickness(12);
+		if (type == ShapeType.path) {
+			shape.setPathData(PathData.obtain(HEART));
+		}
+		return shape;
+	}
+
+	/**
+	 * @param count
+	 *            the number of shapes
+	 * @param seed
+	 *            the random seed
+	 * @return the shapes of every type, sorted by z order
+	 */
+	public static List<ShapeGeometry> createShapes(final int count,
+			final long seed) {
+		final Random random = new Random(seed);
+		final int side = getSide(count);
+		final ShapeType[] types = ShapeType.values();
+
+		List<ShapeGeometry> shapes = new ArrayList<ShapeGeometry>(count);
+		for (int i = 0; i < count; ++i) {
+			ShapeGeometry shape = createShape(types[i % types.length]);
+			shape.setPosition(random.nextInt(side), random.nextInt(side));
+			shape.setZOrder(random.nextInt(count));
+			shape.setAngle(random.nextInt(360));
+			shapes.add(shape);
+		}
+
+		Collections.sort(shapes);
+		return shapes;
+	}
+
+	/**
+	 * @param count
+	 *            the number of shapes
+	 * @param seed
+	 *            the random seed
+	 * @return a shapes xml document of every type, in random z order, with a
+	 *         group every 100 shapes
+	 */
+	public static String createXml(final int count, final long seed) {
+		final Random random = new Random(seed);
+		final int side = getSide(count);
+		final ShapeType[] types = ShapeType.values();
+
+		StringBuilder xml = new StringBuilder(count * 160);
+		xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<shapes>\n");
+		for (int i = 0; i < count; ++i) {
+			if ((i % 100) == 0) {
+				if (i > 0) {
+					xml.append("</group>\n");
+				}
+				xml.append("<group id=\"g").append(i)
+						.append("\" x=\"8dp\" angle=\"5\">\n");
+			}
+
+			ShapeType type = types[i % types.length];
+			xml.append('<').append(type.name());
+			xml.append(" id=\"s").append(i).append('"');
+			xml.append(" x=\"").append(random.nextInt(side)).append("dp\"");
+			xml.append(" y=\"").append(random.nextInt(side)).append("dp\"");
+			xml.append(" z=\"").append(random.nextInt(count)).append('"');
+			xml.append(" width=\"64dp\" height=\"48dp\"");
+			xml.append(" angle=\"").append(random.nextInt(360)).append('"');
+			xml.append(" base=\"#FF336699\" accent=\"red\"");
+			if (type == ShapeType.arc) {
+				xml.append(" start=\"45\" end=\"270\" thickness=\"12dp\"");
+			} else if (type == ShapeType.path) {
+				xml.append(" d=\"").append(HEART).append('"');
+			}
+			xml.append(" label=\"").append(i).append("\" labelSize=\"12sp\"");
+			xml.append("/>\n");
+		}
+		if (count > 0) {
+			xml.append("</group>\n");
+		}
+		xml.append("</shapes>\n");
+		return xml.toString();
+	}
+
+	private ShapeFixtures() {
+	}
+}
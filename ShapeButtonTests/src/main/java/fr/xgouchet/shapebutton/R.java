@@ -0,0 +1,20 @@
+package fr.xgouchet.shapebutton;
+
+/**
+ * Stands for the R class generated by aapt for the library project (see
+ * res/values/attrs.xml), which the JVM build does not run.
+ */
+public final class R {
+
+	public static final class attr {
+		public static final int shapes = 0x7f010000;
+		public static final int touchTolerance = 0x7f010001;
+	}
+
+	public static final class styleable {
+		public static final int[] ShapeButton = { attr.shapes,
+				attr.touchTolerance };
+		public static final int ShapeButton_shapes = 0;
+		public static final int ShapeButton_touchTolerance = 1;
+	}
+}
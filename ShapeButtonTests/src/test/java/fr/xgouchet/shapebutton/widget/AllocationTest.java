@@ -0,0 +1,339 @@
+package fr.xgouchet.shapebutton.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowMatrix;
+import org.robolectric.shadows.ShadowPath;
+import org.robolectric.shadows.ShadowView;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import fr.xgouchet.shapebutton.geometry.ShapeType;
+import fr.xgouchet.shapebutton.test.Allocations;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeElement;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeGroup;
+
+/**
+ * Checks that the steady state of the draw and touch paths does not
+ * allocate, for every shape type, with labels and nested groups.
+ * 
+ * The shapes are drawn on a canvas doing nothing, so that only the widget
+ * code is measured (and not the Robolectric canvas shadow). The frame
+ * scheduled by the first invalidation never runs (the main looper is
+ * paused), so the framework's frame callbacks are not measured either.
+ * 
+ * The Robolectric matrix shadow allocates a PointF for each mapped point,
+ * where the native matrix does not : it is replaced by
+ * {@link AffineShadowMatrix} so that the touch mapping through the groups
+ * can be measured. Likewise, the path shadow allocates a point for each
+ * segment (where the native path keeps them in native memory) and the view
+ * shadow requests a layout through a reflection proxy : they are replaced by
+ * {@link NativeShadowPath} and {@link LayoutShadowView} so that the rebind
+ * can be measured.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 19, shadows = {
+		AllocationTest.AffineShadowMatrix.class,
+		AllocationTest.NativeShadowPath.class,
+		AllocationTest.LayoutShadowView.class })
+public class AllocationTest {
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+
+		mButton = new ShapeButton(RuntimeEnvironment.application);
+		ShapeGroup parent = mButton.createGroup(null);
+		parent.setTranslation(GROUP_X, GROUP_Y);
+		ShapeGroup child = mButton.createGroup(parent);
+
+		mShapes = new ShapeElement[TYPES.length];
+		for (int i = 0; i < TYPES.length; ++i) {
+			ShapeElement shape = mButton.createShape(TYPES[i]);
+			shape.setId(TYPES[i].name());
+			shape.setPosition(i * SPACING, 0, i);
+			shape.setSize(100, 100);
+			shape.setRange(0, 360);
+			shape.setThickness(20);
+			if (TYPES[i] == ShapeType.path) {
+				shape.setPathData(ShapeFixtures.HEART);
+			}
+			shape.setLabel(TYPES[i].name());
+			shape.setLabelSize(12);
+			shape.setGroup(child);
+			mButton.addShape(shape);
+			mShapes[i] = shape;
+		}
+
+		int spec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+		mButton.measure(spec, spec);
+		mButton.layout(0, 0, mButton.getMeasuredWidth(),
+				mButton.getMeasuredHeight());
+
+		long now = SystemClock.uptimeMillis();
+		mEvent = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 0, 0, 0);
+	}
+
+	@After
+	public void tearDown() {
+		mEvent.recycle();
+	}
+
+	@Test
+	public void drawDoesNotAllocate() {
+		final Canvas canvas = new NullCanvas();
+		long allocated = Allocations.measure(new Runnable() {
+			public void run() {
+				mButton.onDraw(canvas);
+			}
+		});
+		assertEquals(0, allocated);
+	}
+
+	@Test
+	public void shapeDrawDoesNotAllocate() {
+		final Canvas canvas = new NullCanvas();
+		for (final ShapeElement shape : mShapes) {
+			long allocated = Allocations.measure(new Runnable() {
+				public void run() {
+					shape.onDraw(canvas);
+				}
+			});
+			assertEquals(shape.getId(), 0, allocated);
+		}
+	}
+
+	@Test
+	public void checkTouchDoesNotAllocate() {
+		for (final ShapeElement shape : mShapes) {
+			long allocated = Allocations.measure(new Runnable() {
+				public void run() {
+					int hits = 0;
+					for (int x = -10; x < 110; x += 5) {
+						for (int y = -10; y < 110; y += 5) {
+							if (shape.checkTouch(shape.getGeometry().getX()
+									+ x, y)) {
+								hits++;
+							}
+						}
+					}
+					mSink += hits;
+				}
+			});
+			assertEquals(shape.getId(), 0, allocated);
+		}
+	}
+
+	@Test
+	public void touchGestureDoesNotAllocate() {
+		for (int i = 0; i < TYPES.length; ++i) {
+			final float x = GROUP_X + (i * SPACING) + getTouchX(TYPES[i]);
+			final float y = GROUP_Y + 50;
+			touch(MotionEvent.ACTION_DOWN, x, y);
+			assertTrue(TYPES[i].name(), mShapes[i].isPressed());
+			touch(MotionEvent.ACTION_MOVE, x + 1, y + 1);
+			assertTrue(TYPES[i].name(), mShapes[i].isPressed());
+			touch(MotionEvent.ACTION_UP, x + 1, y + 1);
+
+			long allocated = Allocations.measure(new Runnable() {
+				public void run() {
+					touch(MotionEvent.ACTION_DOWN, x, y);
+					touch(MotionEvent.ACTION_MOVE, x + 1, y + 1);
+					touch(MotionEvent.ACTION_UP, x + 1, y + 1);
+				}
+			});
+			assertEquals(TYPES[i].name(), 0, allocated);
+		}
+	}
+
+	@Test
+	public void rebindDoesNotAllocate() throws Exception {
+		final RecordedXmlParser xpp = new RecordedXmlParser(
+				ShapeFixtures.createXml(REBIND_SHAPES, 42));
+		rebind(xpp);
+		assertNotNull(mButton.getGroup("g200"));
+
+		// the second rebind reuses the shapes, groups and labels of the first
+		long allocated = Allocations.measure(new Runnable() {
+			public void run() {
+				rebind(xpp);
+			}
+		});
+		assertEquals(0, allocated);
+	}
+
+	private void rebind(final RecordedXmlParser xpp) {
+		mButton.reset();
+		xpp.rewind();
+		try {
+			mButton.readShapesXml(xpp);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param type
+	 *            a shape type
+	 * @return an x offset inside a shape of that type (100 x 100, full ring
+	 *         of 20 for the arc)
+	 */
+	private static float getTouchX(final ShapeType type) {
+		return (type == ShapeType.arc) ? 10 : 50;
+	}
+
+	private boolean touch(final int action, final float x, final float y) {
+		mEvent.setAction(action);
+		mEvent.setLocation(x, y);
+		return mButton.onTouchEvent(mEvent);
+	}
+
+	/**
+	 * A canvas drawing nothing, and reporting a clip holding all the shapes
+	 */
+	private static class NullCanvas extends Canvas {
+		@Override
+		public boolean getClipBounds(final Rect bounds) {
+			bounds.set(0, 0, 10000, 10000);
+			return true;
+		}
+
+		@Override
+		public int save() {
+			return 1;
+		}
+
+		@Override
+		public void restore() {
+		}
+
+		@Override
+		public void translate(final float dx, final float dy) {
+		}
+
+		@Override
+		public void rotate(final float degrees) {
+		}
+
+		@Override
+		public void concat(final Matrix matrix) {
+		}
+
+		@Override
+		public void drawRect(final Rect r, final Paint paint) {
+		}
+
+		@Override
+		public void drawOval(final RectF oval, final Paint paint) {
+		}
+
+		@Override
+		public void drawPath(final Path path, final Paint paint) {
+		}
+
+		@Override
+		public void drawText(final String text, final float x, final float y,
+				final Paint paint) {
+		}
+	}
+
+	/**
+	 * A matrix shadow mapping points in place, like the native matrix does
+	 */
+	@Implements(Matrix.class)
+	public static class AffineShadowMatrix extends ShadowMatrix {
+		@Override
+		@Implementation
+		protected void mapPoints(final float[] dst, final int dstIndex,
+				final float[] src, final int srcIndex, final int pointCount) {
+			getValues(mValues);
+			for (int i = 0; i < (pointCount * 2); i += 2) {
+				float x = src[srcIndex + i], y = src[srcIndex + i + 1];
+				float w = (mValues[Matrix.MPERSP_0] * x)
+						+ (mValues[Matrix.MPERSP_1] * y)
+						+ mValues[Matrix.MPERSP_2];
+				dst[dstIndex + i] = ((mValues[Matrix.MSCALE_X] * x)
+						+ (mValues[Matrix.MSKEW_X] * y) + mValues[Matrix.MTRANS_X])
+						/ w;
+				dst[dstIndex + i + 1] = ((mValues[Matrix.MSKEW_Y] * x)
+						+ (mValues[Matrix.MSCALE_Y] * y) + mValues[Matrix.MTRANS_Y])
+						/ w;
+			}
+		}
+
+		final private float[] mValues = new float[9];
+	}
+
+	/**
+	 * A path shadow keeping no points, like the native path does not keep
+	 * them in the java heap
+	 */
+	@Implements(Path.class)
+	public static class NativeShadowPath extends ShadowPath {
+		@Override
+		@Implementation
+		public void moveTo(final float x, final float y) {
+		}
+
+		@Override
+		@Implementation
+		public void lineTo(final float x, final float y) {
+		}
+
+		@Override
+		@Implementation
+		public void quadTo(final float x1, final float y1, final float x2,
+				final float y2) {
+		}
+
+		@Override
+		@Implementation
+		public void reset() {
+		}
+	}
+
+	/**
+	 * A view shadow only recording the layout requests (the buttons measured
+	 * here are never attached, so the real request only marks them for the
+	 * next measure)
+	 */
+	@Implements(View.class)
+	public static class LayoutShadowView extends ShadowView {
+		@Override
+		@Implementation
+		public void requestLayout() {
+			setDidRequestLayout(true);
+		}
+	}
+
+	private static final ShapeType[] TYPES = ShapeType.values();
+	private static final int SPACING = 120;
+	private static final int GROUP_X = 20, GROUP_Y = 10;
+	private static final int REBIND_SHAPES = 250;
+
+	private ShapeButton mButton;
+	private ShapeElement[] mShapes;
+	private MotionEvent mEvent;
+	private int mSink;
+}
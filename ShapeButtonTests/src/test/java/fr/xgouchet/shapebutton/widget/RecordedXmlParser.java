@@ -0,0 +1,233 @@
+package fr.xgouchet.shapebutton.widget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * A pull parser replaying the events of a document read once, with the same
+ * strings every time : it can be rewound and read again without allocating,
+ * like the compiled xml parser of the resources does not allocate its names.
+ * 
+ * Only the calls made by the shapes reader are supported.
+ */
+class RecordedXmlParser implements XmlPullParser {
+
+	/**
+	 * @param xml
+	 *            the document to record
+	 */
+	RecordedXmlParser(final String xml) throws XmlPullParserException,
+			IOException {
+		KXmlParser xpp = new KXmlParser();
+		xpp.setInput(new StringReader(xml));
+
+		List<Integer> types = new ArrayList<Integer>();
+		List<String> names = new ArrayList<String>();
+		List<String[]> attributes = new ArrayList<String[]>();
+		int event = xpp.getEventType();
+		while (true) {
+			types.add(event);
+			names.add(xpp.getName());
+			String[] attrs = new String[Math.max(0, xpp.getAttributeCount()) * 2];
+			for (int i = 0; i < (attrs.length / 2); ++i) {
+				attrs[i * 2] = xpp.getAttributeName(i);
+				attrs[(i * 2) + 1] = xpp.getAttributeValue(i);
+			}
+			attributes.add(attrs);
+
+			if (event == END_DOCUMENT) {
+				break;
+			}
+			event = xpp.next();
+		}
+
+		mTypes = new int[types.size()];
+		for (int i = 0; i < mTypes.length; ++i) {
+			mTypes[i] = types.get(i);
+		}
+		mNames = names.toArray(new String[names.size()]);
+		mAttributes = attributes.toArray(new String[attributes.size()][]);
+	}
+
+	/**
+	 * Goes back to the start of the document
+	 */
+	void rewind() {
+		mEvent = 0;
+	}
+
+	public int getEventType() {
+		return mTypes[mEvent];
+	}
+
+	public int next() {
+		if (mEvent < (mTypes.length - 1)) {
+			mEvent++;
+		}
+		return mTypes[mEvent];
+	}
+
+	public String getName() {
+		return mNames[mEvent];
+	}
+
+	public int getAttributeCount() {
+		return (mTypes[mEvent] == START_TAG) ? mAttributes[mEvent].length / 2
+				: -1;
+	}
+
+	public String getAttributeName(final int index) {
+		return mAttributes[mEvent][index * 2];
+	}
+
+	public String getAttributeValue(final int index) {
+		return mAttributes[mEvent][(index * 2) + 1];
+	}
+
+	public String getAttributeValue(final String namespace, final String name) {
+		String[] attrs = mAttributes[mEvent];
+		for (int i = 0; i < attrs.length; i += 2) {
+			if (attrs[i].equals(name)) {
+				return attrs[i + 1];
+			}
+		}
+		return null;
+	}
+
+	public void setFeature(final String name, final boolean state) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean getFeature(final String name) {
+		return false;
+	}
+
+	public void setProperty(final String name, final Object value) {
+		throw new UnsupportedOperationException();
+	}
+
+	public Object getProperty(final String name) {
+		return null;
+	}
+
+	public void setInput(final Reader in) {
+		throw new UnsupportedOperationException();
+	}
+
+	public void setInput(final InputStream inputStream,
+			final String inputEncoding) {
+		throw new UnsupportedOperationException();
+	}
+
+	public String getInputEncoding() {
+		return null;
+	}
+
+	public void defineEntityReplacementText(final String entityName,
+			final String replacementText) {
+		throw new UnsupportedOperationException();
+	}
+
+	public int getNamespaceCount(final int depth) {
+		return 0;
+	}
+
+	public String getNamespacePrefix(final int pos) {
+		throw new UnsupportedOperationException();
+	}
+
+	public String getNamespaceUri(final int pos) {
+		throw new UnsupportedOperationException();
+	}
+
+	public String getNamespace(final String prefix) {
+		return null;
+	}
+
+	public int getDepth() {
+		throw new UnsupportedOperationException();
+	}
+
+	public String getPositionDescription() {
+		return "event " + mEvent;
+	}
+
+	public int getLineNumber() {
+		return -1;
+	}
+
+	public int getColumnNumber() {
+		return -1;
+	}
+
+	public boolean isWhitespace() {
+		throw new UnsupportedOperationException();
+	}
+
+	public String getText() {
+		throw new UnsupportedOperationException();
+	}
+
+	public char[] getTextCharacters(final int[] holderForStartAndLength) {
+		throw new UnsupportedOperationException();
+	}
+
+	public String getNamespace() {
+		return "";
+	}
+
+	public String getPrefix() {
+		return null;
+	}
+
+	public boolean isEmptyElementTag() {
+		throw new UnsupportedOperationException();
+	}
+
+	public String getAttributeNamespace(final int index) {
+		return "";
+	}
+
+	public String getAttributePrefix(final int index) {
+		return null;
+	}
+
+	public String getAttributeType(final int index) {
+		return "CDATA";
+	}
+
+	public boolean isAttributeDefault(final int index) {
+		return false;
+	}
+
+	public int nextToken() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void require(final int type, final String namespace,
+			final String name) {
+		throw new UnsupportedOperationException();
+	}
+
+	public String nextText() {
+		throw new UnsupportedOperationException();
+	}
+
+	public int nextTag() {
+		throw new UnsupportedOperationException();
+	}
+
+	final private int[] mTypes;
+	final private String[] mNames;
+	final private String[][] mAttributes;
+
+	private int mEvent;
+}
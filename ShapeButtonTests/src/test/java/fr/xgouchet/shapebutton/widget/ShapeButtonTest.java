@@ -0,0 +1,293 @@
+package fr.xgouchet.shapebutton.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import fr.xgouchet.shapebutton.geometry.ShapeType;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeElement;
+import fr.xgouchet.shapebutton.widget.ShapeButton.ShapeGroup;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 19)
+public class ShapeButtonTest {
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+
+		mButton = new ShapeButton(RuntimeEnvironment.application);
+		mButton.addShape(createShape(ShapeType.rect, "left", 0, 0));
+		mButton.addShape(createShape(ShapeType.oval, "right", 400, 0));
+		mButton.setOnClickListener(new ShapeButton.OnClickListener() {
+			public void onClick(final View v, final String id) {
+				mClicks.add(id);
+			}
+		});
+		mButton.setMetricsListener(mMetrics);
+		layout();
+	}
+
+	@Test
+	public void measuresTheShapesBounds() {
+		assertEquals(500, mButton.getMeasuredWidth());
+		assertEquals(100, mButton.getMeasuredHeight());
+		assertEquals(2, mMetrics.mMeasured);
+	}
+
+	@Test
+	public void labelsLargerThanTheirShapeAreMeasured() {
+		// the label is centered on the shape, and drawn without clip
+		ShapeElement shape = mButton.getShapeAt(450, 50);
+		shape.setSize(20, 20);
+		shape.setLabel(LONG_LABEL);
+		shape.setLabelSize(20);
+		mButton.requestLayout();
+		layout();
+
+		Rect bounds = new Rect();
+		shape.getBounds(bounds);
+		float overflow = (LabelLayout.obtain(LONG_LABEL, 20, null).getWidth() - 20) / 2;
+		assertTrue(overflow > 0);
+		assertEquals(420 + overflow, mButton.getMeasuredWidth(), 1);
+		assertTrue(bounds.right >= 420 + overflow);
+		assertTrue(bounds.left <= 400 - overflow);
+		assertEquals("right", mButton.getShapeAt(410, 10).getId());
+	}
+
+	@Test
+	public void drawsAllShapesWithoutClip() {
+		Canvas canvas = new Canvas(Bitmap.createBitmap(500, 100,
+				Bitmap.Config.ARGB_8888));
+		mButton.onDraw(canvas);
+
+		assertEquals(2, mMetrics.mDrawn);
+		assertEquals(0, mMetrics.mCulled);
+	}
+
+	@Test
+	public void drawSkipsTheShapesOutsideTheClip() {
+		// the shadow canvas does not track the clip
+		Canvas canvas = new Canvas(Bitmap.createBitmap(500, 100,
+				Bitmap.Config.ARGB_8888)) {
+			@Override
+			public boolean getClipBounds(final Rect bounds) {
+				bounds.set(0, 0, 150, 100);
+				return true;
+			}
+		};
+		mButton.onDraw(canvas);
+
+		assertEquals(1, mMetrics.mDrawn);
+		assertEquals(1, mMetrics.mCulled);
+	}
+
+	@Test
+	public void clickIsDispatchedWithTheNextFrame() {
+		assertTrue(touch(MotionEvent.ACTION_DOWN, 50, 50));
+		touch(MotionEvent.ACTION_UP, 50, 50);
+		assertEquals(0, mClicks.size());
+
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals("[left]", mClicks.toString());
+	}
+
+	@Test
+	public void topmostShapeWins() {
+		ShapeElement top = createShape(ShapeType.rect, "top", 50, 50);
+		top.setZOrder(10);
+		mButton.addShape(top);
+		layout();
+
+		touch(MotionEvent.ACTION_DOWN, 75, 75);
+		touch(MotionEvent.ACTION_UP, 75, 75);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals("[top]", mClicks.toString());
+	}
+
+	@Test
+	public void touchOutsideTheShapesIsIgnored() {
+		assertEquals(false, touch(MotionEvent.ACTION_DOWN, 250, 50));
+		touch(MotionEvent.ACTION_UP, 250, 50);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals(0, mClicks.size());
+	}
+
+	@Test
+	public void moveOutsideTheShapeCancelsTheClick() {
+		touch(MotionEvent.ACTION_DOWN, 50, 50);
+		touch(MotionEvent.ACTION_MOVE, 250, 50);
+		touch(MotionEvent.ACTION_UP, 250, 50);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals(0, mClicks.size());
+	}
+
+	@Test
+	public void touchToleranceFindsTheNearestShape() {
+		mButton.setTouchTolerance(40);
+		touch(MotionEvent.ACTION_DOWN, 370, 50);
+		touch(MotionEvent.ACTION_UP, 370, 50);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals("[right]", mClicks.toString());
+	}
+
+	@Test
+	public void disabledShapesAreNotClicked() {
+		mButton.setShapeEnabled("left", false);
+		touch(MotionEvent.ACTION_DOWN, 50, 50);
+		touch(MotionEvent.ACTION_UP, 50, 50);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals(0, mClicks.size());
+	}
+
+	@Test
+	public void childGroupsFollowTheirParent() {
+		ShapeGroup parent = mButton.createGroup(null);
+		ShapeGroup child = mButton.createGroup(parent);
+		ShapeElement shape = createShape(ShapeType.rect, "child", 0, 200);
+		shape.setGroup(child);
+		mButton.addShape(shape);
+		layout();
+		assertEquals("child", mButton.getShapeAt(50, 250).getId());
+
+		parent.setTranslation(200, 0);
+		assertEquals(null, mButton.getShapeAt(50, 250));
+		assertEquals("child", mButton.getShapeAt(250, 250).getId());
+	}
+
+	@Test
+	public void resetDropsThePendingClicks() {
+		touch(MotionEvent.ACTION_DOWN, 50, 50);
+		touch(MotionEvent.ACTION_UP, 50, 50);
+		mButton.reset();
+
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals(0, mClicks.size());
+	}
+
+	@Test
+	public void detachDropsTheScheduledFrame() {
+		Activity activity = Robolectric.setupActivity(Activity.class);
+		activity.setContentView(mButton);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+		touch(MotionEvent.ACTION_DOWN, 50, 50);
+		touch(MotionEvent.ACTION_UP, 50, 50);
+		ViewGroup parent = (ViewGroup) mButton.getParent();
+		parent.removeView(mButton);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals(0, mClicks.size());
+
+		// the next frame is scheduled again once attached
+		parent.addView(mButton);
+		touch(MotionEvent.ACTION_DOWN, 50, 50);
+		touch(MotionEvent.ACTION_UP, 50, 50);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals("[left]", mClicks.toString());
+	}
+
+	@Test
+	public void detachCancelsThePendingLoad() throws Exception {
+		Activity activity = Robolectric.setupActivity(Activity.class);
+		activity.setContentView(mButton);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+		String xml = ShapeFixtures.createXml(50, 42);
+		mButton.loadShapes(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+		((ViewGroup) mButton.getParent()).removeView(mButton);
+
+		// the loader thread posts its batches to the (paused) main looper
+		Thread.sleep(200);
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		assertEquals(0, mMetrics.mParsed);
+		assertEquals("left", mButton.getShapeAt(50, 50).getId());
+	}
+
+	private ShapeElement createShape(final ShapeType type, final String id,
+			final int x, final int y) {
+		ShapeElement shape = mButton.createShape(type);
+		shape.setId(id);
+		shape.setPosition(x, y);
+		shape.setSize(100, 100);
+		return shape;
+	}
+
+	private void layout() {
+		int spec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+		mButton.measure(spec, spec);
+		mButton.layout(0, 0, mButton.getMeasuredWidth(),
+				mButton.getMeasuredHeight());
+	}
+
+	private boolean touch(final int action, final float x, final float y) {
+		long now = SystemClock.uptimeMillis();
+		MotionEvent event = MotionEvent.obtain(now, now, action, x, y, 0);
+		try {
+			return mButton.onTouchEvent(event);
+		} finally {
+			event.recycle();
+		}
+	}
+
+	/**
+	 * Keeps the last reported values
+	 */
+	static class Metrics implements ShapeButton.MetricsListener {
+		public void onShapesParsed(final ShapeButton view, final int shapes,
+				final long duration) {
+			mParsed = shapes;
+			mParseDuration = duration;
+		}
+
+		public void onMeasured(final ShapeButton view, final int shapes,
+				final long duration) {
+			mMeasured = shapes;
+			mMeasureDuration = duration;
+		}
+
+		public void onFrameDrawn(final ShapeButton view, final int drawn,
+				final int culled, final long duration) {
+			mDrawn = drawn;
+			mCulled = culled;
+		}
+
+		public void onHitTest(final ShapeButton view, final int candidates,
+				final long duration) {
+		}
+
+		public void onInvalidate(final ShapeButton view, final int area) {
+		}
+
+		int mParsed, mMeasured, mDrawn, mCulled;
+		long mParseDuration, mMeasureDuration;
+	}
+
+	private static final String LONG_LABEL = "a label much wider than its shape, "
+			+ "drawn over the shapes around";
+
+	private ShapeButton mButton;
+	private final Metrics mMetrics = new Metrics();
+	private final List<String> mClicks = new ArrayList<String>();
+}
@@ -0,0 +1,104 @@
+package fr.xgouchet.shapebutton.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.view.View.MeasureSpec;
+import fr.xgouchet.shapebutton.test.ShapeFixtures;
+
+/**
+ * Coarse time budgets on the load and measure paths of the widget, at fixed
+ * shape counts. They catch complexity regressions (eg : inserting the loaded
+ * shapes one by one in z order), not small slowdowns.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 19)
+public class TimeBudgetTest {
+
+	private static final int SHAPES = 5000;
+
+	@Test
+	public void load5kShapesWithin2s() throws Exception {
+		ShapeButton button = load(ShapeFixtures.createXml(SHAPES, 42));
+
+		assertEquals(SHAPES, mMetrics.mParsed);
+		assertBudget("parse", mMetrics.mParseDuration, 2000);
+		assertTrue(button.getGroup("g0") != null);
+	}
+
+	@Test
+	public void measure5kShapesWithin250ms() throws Exception {
+		ShapeButton button = load(ShapeFixtures.createXml(SHAPES, 42));
+
+		final float center = ShapeFixtures.getSide(SHAPES) / 2.0f;
+		final ShapeButton.ShapeElement shape = button.getNearestShape(center,
+				center, center);
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 5; ++i) {
+			// a shape change forces the bounds and index rebuild
+			shape.setAngle(i * 10);
+
+			int spec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+			button.measure(spec, spec);
+			best = Math.min(best, mMetrics.mMeasureDuration);
+		}
+
+		assertEquals(SHAPES, mMetrics.mMeasured);
+		assertBudget("measure", best, 250);
+	}
+
+	/**
+	 * @param xml
+	 *            a shapes xml
+	 * @return a button with the shapes loaded
+	 */
+	private ShapeButton load(final String xml) throws Exception {
+		ShapeButton button = new ShapeButton(RuntimeEnvironment.application);
+		button.setMetricsListener(mMetrics);
+		button.setOnShapesLoadedListener(new ShapeButton.OnShapesLoadedListener() {
+			public void onShapesLoaded(final ShapeButton view, final int shapes) {
+				mLoaded = true;
+			}
+
+			public void onShapesLoadFailed(final ShapeButton view,
+					final Exception error) {
+				mError = error;
+				mLoaded = true;
+			}
+		});
+		button.loadShapes(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+		// the batches are posted from the loader thread
+		final long timeout = System.currentTimeMillis() + 30000;
+		while (!mLoaded && (System.currentTimeMillis() < timeout)) {
+			Thread.sleep(5);
+			ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+		}
+
+		assertTrue("load timed out", mLoaded);
+		assertNull(mError);
+		return button;
+	}
+
+	private static void assertBudget(final String name, final long nanos,
+			final long budgetMs) {
+		long ms = nanos / 1000000;
+		assertTrue(name + " took " + ms + "ms (budget " + budgetMs + "ms)",
+				ms <= budgetMs);
+	}
+
+	private final ShapeButtonTest.Metrics mMetrics = new ShapeButtonTest.Metrics();
+	private volatile boolean mLoaded;
+	private volatile Exception mError;
+}